@@ -25,7 +25,10 @@ class Eip20EventDecorator(
         val map: MutableMap<String, List<ContractEventInstance>> = mutableMapOf()
 
         for (event in erc20Events) {
-            val tokenInfo = TokenInfo(event.tokenName, event.tokenSymbol, event.tokenDecimal)
+            val tokenInfo = when {
+                event.tokenName.isEmpty() && event.tokenSymbol.isEmpty() -> null
+                else -> TokenInfo(event.tokenName, event.tokenSymbol, event.tokenDecimal)
+            }
             val eventInstance = TransferEventInstance(event.contractAddress, event.from, event.to, event.value, tokenInfo)
 
             map[event.hashString] = (map[event.hashString] ?: listOf()) + listOf(eventInstance)
@@ -7,6 +7,7 @@ import io.horizontalsystems.erc20kit.events.TokenInfo
 import io.horizontalsystems.ethereumkit.api.core.IRpcApiProvider
 import io.horizontalsystems.ethereumkit.api.core.RpcBlockchain
 import io.horizontalsystems.ethereumkit.contracts.ContractMethodHelper
+import io.horizontalsystems.ethereumkit.core.EthereumKit
 import io.horizontalsystems.ethereumkit.core.RpcApiProviderFactory
 import io.horizontalsystems.ethereumkit.models.Address
 import io.horizontalsystems.ethereumkit.models.DefaultBlockParameter
@@ -14,7 +15,11 @@ import io.horizontalsystems.ethereumkit.models.RpcSource
 import io.horizontalsystems.ethereumkit.spv.core.toBigInteger
 import io.reactivex.Single
 
-class Eip20Provider(private val provider: IRpcApiProvider) {
+class Eip20Provider private constructor(private val call: (Address, ByteArray) -> Single<ByteArray>) {
+
+    constructor(provider: IRpcApiProvider) : this({ contractAddress, data ->
+        provider.single(RpcBlockchain.callRpc(contractAddress, data, DefaultBlockParameter.Latest))
+    })
 
     class TokenNotFoundException : Throwable()
 
@@ -30,13 +35,7 @@ class Eip20Provider(private val provider: IRpcApiProvider) {
     }
 
     private fun getDecimals(contractAddress: Address): Single<Int> {
-        val callRpc = RpcBlockchain.callRpc(
-            contractAddress,
-            DecimalsMethod().encodedABI(),
-            DefaultBlockParameter.Latest
-        )
-
-        return provider.single(callRpc)
+        return call(contractAddress, DecimalsMethod().encodedABI())
             .map {
                 if (it.isEmpty()) throw TokenNotFoundException()
 
@@ -45,13 +44,7 @@ class Eip20Provider(private val provider: IRpcApiProvider) {
     }
 
     private fun getTokenSymbol(contractAddress: Address): Single<String> {
-        val callRpc = RpcBlockchain.callRpc(
-            contractAddress,
-            SymbolMethod().encodedABI(),
-            DefaultBlockParameter.Latest
-        )
-
-        return provider.single(callRpc)
+        return call(contractAddress, SymbolMethod().encodedABI())
             .map {
                 if (it.isEmpty()) throw TokenNotFoundException()
 
@@ -65,13 +58,7 @@ class Eip20Provider(private val provider: IRpcApiProvider) {
     }
 
     private fun getTokenName(contractAddress: Address): Single<String> {
-        val callRpc = RpcBlockchain.callRpc(
-            contractAddress,
-            NameMethod().encodedABI(),
-            DefaultBlockParameter.Latest
-        )
-
-        return provider.single(callRpc)
+        return call(contractAddress, NameMethod().encodedABI())
             .map {
                 if (it.isEmpty()) throw TokenNotFoundException()
 
@@ -90,6 +77,10 @@ class Eip20Provider(private val provider: IRpcApiProvider) {
             return Eip20Provider(RpcApiProviderFactory.nodeApiProvider(rpcSource))
         }
 
+        fun instance(ethereumKit: EthereumKit): Eip20Provider {
+            return Eip20Provider { contractAddress, data -> ethereumKit.call(contractAddress, data) }
+        }
+
     }
 
 }
\ No newline at end of file
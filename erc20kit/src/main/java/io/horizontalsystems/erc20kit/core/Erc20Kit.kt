@@ -144,7 +144,7 @@ class Erc20Kit(
         }
 
         fun addTransactionSyncer(ethereumKit: EthereumKit) {
-            ethereumKit.addTransactionSyncer(Erc20TransactionSyncer(ethereumKit.transactionProvider, ethereumKit.eip20Storage))
+            ethereumKit.addTransactionSyncer(Erc20TransactionSyncer(ethereumKit.transactionProvider, ethereumKit.eip20Storage, ethereumKit.chain.confirmationDepth, Eip20Provider.instance(ethereumKit)))
         }
 
         fun addDecorators(ethereumKit: EthereumKit) {
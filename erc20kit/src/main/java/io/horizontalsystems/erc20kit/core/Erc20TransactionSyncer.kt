@@ -1,52 +1,116 @@
 package io.horizontalsystems.erc20kit.core
 
+import io.horizontalsystems.erc20kit.events.TokenInfo
 import io.horizontalsystems.ethereumkit.core.IEip20Storage
 import io.horizontalsystems.ethereumkit.core.ITransactionProvider
 import io.horizontalsystems.ethereumkit.core.ITransactionSyncer
+import io.horizontalsystems.ethereumkit.models.Address
 import io.horizontalsystems.ethereumkit.models.Eip20Event
 import io.horizontalsystems.ethereumkit.models.ProviderTokenTransaction
 import io.horizontalsystems.ethereumkit.models.Transaction
+import io.horizontalsystems.ethereumkit.transactionsyncers.ReorgWindow
+import io.reactivex.Flowable
 import io.reactivex.Single
+import java.util.Optional
+import java.util.concurrent.ConcurrentHashMap
 
+// Transfers found in logs come without token metadata. It is taken from stored events of the same contract,
+// or read from the contract when eip20Provider is given, so the decorations keep their token info.
 class Erc20TransactionSyncer(
         private val transactionProvider: ITransactionProvider,
-        private val storage: IEip20Storage
+        private val storage: IEip20Storage,
+        confirmationDepth: Long = 0,
+        private val eip20Provider: Eip20Provider? = null
 ) : ITransactionSyncer {
 
+    private val reorgWindow = ReorgWindow(confirmationDepth)
+    private val tokenInfos = ConcurrentHashMap<Address, Optional<TokenInfo>>()
+
     private fun handle(transactions: List<ProviderTokenTransaction>) {
         if (transactions.isEmpty()) return
 
-        val events = transactions.map { tx ->
-            Eip20Event(tx.hash, tx.blockNumber, tx.contractAddress, tx.from, tx.to, tx.value, tx.tokenName, tx.tokenSymbol, tx.tokenDecimal)
-        }
-
-        storage.save(events)
+        storage.save(events(transactions))
     }
 
+    private fun events(transactions: List<ProviderTokenTransaction>) =
+            transactions.map { tx ->
+                Eip20Event(tx.hash, tx.blockNumber, tx.contractAddress, tx.from, tx.to, tx.value, tx.tokenName, tx.tokenSymbol, tx.tokenDecimal)
+            }
+
     override fun getTransactionsSingle(): Single<Pair<List<Transaction>, Boolean>> {
         val lastTransactionBlockNumber = storage.getLastEvent()?.blockNumber ?: 0
         val initial: Boolean = lastTransactionBlockNumber == 0L
 
         return transactionProvider.getTokenTransactions(lastTransactionBlockNumber + 1)
+                .flatMap { withTokenInfo(it) }
                 .doOnSuccess { providerTokenTransactions -> handle(providerTokenTransactions) }
-                .map { providerTokenTransactions ->
-                    val array = providerTokenTransactions.map { transaction ->
-                        Transaction(
-                                hash = transaction.hash,
-                                timestamp = transaction.timestamp,
-                                isFailed = false,
-                                blockNumber = transaction.blockNumber,
-                                transactionIndex = transaction.transactionIndex,
-                                nonce = transaction.nonce,
-                                gasPrice = transaction.gasPrice,
-                                gasLimit = transaction.gasLimit,
-                                gasUsed = transaction.gasUsed
-                        )
-
-                    }
-                    Pair(array, initial)
+                .map { providerTokenTransactions -> Pair(transactions(providerTokenTransactions), initial) }
+    }
+
+    override fun getTransactionsFlowable(): Flowable<Pair<List<Transaction>, Boolean>> {
+        val lastTransactionBlockNumber = storage.getLastEvent()?.blockNumber ?: 0
+        val initial: Boolean = lastTransactionBlockNumber == 0L
+
+        val startBlock = reorgWindow.startBlock(lastTransactionBlockNumber)
+        val pages = transactionProvider.getTokenTransactionsPages(startBlock)
+                .concatMapSingle { withTokenInfo(it) }
+
+        return reorgWindow
+                .reconcile(startBlock, pages, { it.blockNumber }) { fromBlock, toBlock, providerTokenTransactions ->
+                    storage.replace(fromBlock, toBlock, events(providerTokenTransactions))
+                }
+                .map { (providerTokenTransactions, _) -> Pair(transactions(providerTokenTransactions), initial) }
+    }
+
+    private fun withTokenInfo(transactions: List<ProviderTokenTransaction>): Single<List<ProviderTokenTransaction>> {
+        val contractAddresses = transactions
+                .filter { it.tokenName.isEmpty() && it.tokenSymbol.isEmpty() }
+                .map { it.contractAddress }
+                .distinct()
+                .filter { !tokenInfos.containsKey(it) }
+
+        if (contractAddresses.isNotEmpty()) {
+            storage.getEventsWithTokenInfo(contractAddresses).forEach { event ->
+                tokenInfos[event.contractAddress] = Optional.of(TokenInfo(event.tokenName, event.tokenSymbol, event.tokenDecimal))
+            }
+        }
+
+        val fetches = contractAddresses
+                .filter { !tokenInfos.containsKey(it) }
+                .map { contractAddress ->
+                    val tokenInfo = eip20Provider?.getTokenInfo(contractAddress)?.map { Optional.of(it) } ?: Single.just(Optional.empty())
+
+                    tokenInfo
+                            .onErrorReturnItem(Optional.empty())
+                            .doOnSuccess { tokenInfos[contractAddress] = it }
                 }
-                .onErrorReturnItem(Pair(listOf(), initial))
+
+        return Single.concat(fetches).toList().map {
+            transactions.map { transaction ->
+                val tokenInfo = tokenInfos[transaction.contractAddress]?.orElse(null)
+
+                if (tokenInfo != null && transaction.tokenName.isEmpty() && transaction.tokenSymbol.isEmpty()) {
+                    transaction.copy(tokenName = tokenInfo.tokenName, tokenSymbol = tokenInfo.tokenSymbol, tokenDecimal = tokenInfo.tokenDecimal)
+                } else {
+                    transaction
+                }
+            }
+        }
     }
 
+    private fun transactions(providerTokenTransactions: List<ProviderTokenTransaction>) =
+            providerTokenTransactions.map { transaction ->
+                Transaction(
+                        hash = transaction.hash,
+                        timestamp = transaction.timestamp,
+                        isFailed = false,
+                        blockNumber = transaction.blockNumber,
+                        transactionIndex = transaction.transactionIndex,
+                        nonce = transaction.nonce,
+                        gasPrice = transaction.gasPrice,
+                        gasLimit = transaction.gasLimit,
+                        gasUsed = transaction.gasUsed
+                )
+            }
+
 }
@@ -5,19 +5,19 @@ import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
 import io.horizontalsystems.ethereumkit.core.EthereumKit
 import io.horizontalsystems.ethereumkit.network.ConnectionManager
 import io.reactivex.Single
-import io.reactivex.disposables.CompositeDisposable
-import io.reactivex.schedulers.Schedulers
-import java.util.Timer
-import kotlin.concurrent.schedule
 
 class ApiRpcSyncer(
     private val rpcApiProvider: IRpcApiProvider,
     private val connectionManager: ConnectionManager,
     private val syncInterval: Long,
 ) : IRpcSyncer {
-    private val disposables = CompositeDisposable()
     private var isStarted = false
-    private var timer: Timer? = null
+    private val coalescer = RpcCoalescer(EthereumKit.gson)
+    private val headPoller = HeadPoller(
+        poll = { single(BlockNumberJsonRpc()) },
+        onHead = { listener?.didUpdateLastBlockHeight(it) },
+        initialInterval = syncInterval * 1000
+    )
 
     init {
         connectionManager.listener = object : ConnectionManager.Listener {
@@ -48,20 +48,19 @@ class ApiRpcSyncer(
         isStarted = false
 
         state = SyncerState.NotReady(EthereumKit.SyncError.NotStarted())
-        disposables.clear()
-        stopTimer()
+        headPoller.stop()
     }
 
     override fun pause() {
-        stopTimer()
+        headPoller.stop()
     }
 
     override fun resume() {
-        startTimer()
+        headPoller.start()
     }
 
     override fun <T: Any> single(rpc: JsonRpc<T>): Single<T> =
-        rpcApiProvider.single(rpc)
+        coalescer.single(rpc, rpcApiProvider::single)
     //endregion
 
     private fun handleConnectionChange() {
@@ -69,37 +68,11 @@ class ApiRpcSyncer(
 
         if (connectionManager.isConnected) {
             state = SyncerState.Ready
-            startTimer()
+            headPoller.start()
         } else {
             state = SyncerState.NotReady(EthereumKit.SyncError.NoNetworkConnection())
-            stopTimer()
+            headPoller.stop()
         }
     }
 
-    private fun startTimer() {
-        if (timer != null) return
-
-        timer = Timer().apply {
-            schedule(0, syncInterval * 1000) {
-                onFireTimer()
-            }
-        }
-    }
-
-    private fun stopTimer() {
-        timer?.cancel()
-        timer = null
-    }
-
-    private fun onFireTimer() {
-        rpcApiProvider.single(BlockNumberJsonRpc())
-                .subscribeOn(Schedulers.io())
-                .observeOn(Schedulers.io())
-                .subscribe { lastBlockNumber ->
-                    listener?.didUpdateLastBlockHeight(lastBlockNumber)
-                }.let {
-                    disposables.add(it)
-                }
-    }
-
 }
@@ -0,0 +1,193 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
+import io.horizontalsystems.ethereumkit.core.EthereumKit
+import io.horizontalsystems.ethereumkit.models.RpcSource
+import io.reactivex.Single
+
+class ChainHeadTracker private constructor(
+    private val rpcSource: RpcSource,
+    private val feed: Feed
+) : IRpcSyncerListener {
+
+    class Feed(val syncer: IRpcSyncer, val onClose: () -> Unit = {})
+
+    private val subscribers = mutableSetOf<Subscriber>()
+    private val startedSubscribers = mutableSetOf<Subscriber>()
+    private val pausedSubscribers = mutableSetOf<Subscriber>()
+    private var isPaused = false
+
+    @Volatile
+    var lastBlockHeight: Long? = null
+        private set
+
+    init {
+        feed.syncer.listener = this
+    }
+
+    private fun start(subscriber: Subscriber) {
+        val isFirst = synchronized(this) {
+            if (!startedSubscribers.add(subscriber)) return
+            startedSubscribers.size == 1
+        }
+
+        if (isFirst) {
+            feed.syncer.start()
+        } else {
+            subscriber.listener?.didUpdateSyncerState(feed.syncer.state)
+            lastBlockHeight?.let { subscriber.listener?.didUpdateLastBlockHeight(it) }
+        }
+
+        resumeIfNeeded(subscriber)
+    }
+
+    private fun stop(subscriber: Subscriber) {
+        val isLastStarted = synchronized(this) {
+            val wasStarted = startedSubscribers.remove(subscriber)
+            pausedSubscribers.remove(subscriber)
+
+            wasStarted && startedSubscribers.isEmpty()
+        }
+
+        val isReleased = release(subscriber, this)
+
+        if (isLastStarted || isReleased) {
+            feed.syncer.stop()
+        }
+
+        if (isReleased) {
+            feed.onClose()
+        }
+    }
+
+    private fun pause(subscriber: Subscriber) {
+        val shouldPause = synchronized(this) {
+            pausedSubscribers.add(subscriber)
+            val allPaused = startedSubscribers.isNotEmpty() && pausedSubscribers.containsAll(startedSubscribers)
+
+            (allPaused && !isPaused).also { if (it) isPaused = true }
+        }
+
+        if (shouldPause) {
+            feed.syncer.pause()
+        }
+    }
+
+    private fun resumeIfNeeded(subscriber: Subscriber) {
+        val shouldResume = synchronized(this) {
+            pausedSubscribers.remove(subscriber)
+
+            isPaused.also { isPaused = false }
+        }
+
+        if (shouldResume) {
+            feed.syncer.resume()
+        }
+    }
+
+    @Synchronized
+    private fun startedListeners(): List<IRpcSyncerListener> {
+        return startedSubscribers.mapNotNull { it.listener }
+    }
+
+    //region IRpcSyncerListener
+    override fun didUpdateSyncerState(state: SyncerState) {
+        startedListeners().forEach { it.didUpdateSyncerState(state) }
+    }
+
+    override fun didUpdateLastBlockHeight(lastBlockHeight: Long) {
+        this.lastBlockHeight = lastBlockHeight
+        startedListeners().forEach { it.didUpdateLastBlockHeight(lastBlockHeight) }
+    }
+    //endregion
+
+    private class Subscriber(
+        private val rpcSource: RpcSource,
+        private val factory: () -> Feed
+    ) : IRpcSyncer {
+
+        private var tracker: ChainHeadTracker? = null
+        private var isStarted = false
+        private var isStopped = false
+
+        // A stopped subscriber has released its tracker and only acquires one again when started
+        @Synchronized
+        private fun tracker(): ChainHeadTracker? {
+            if (isStopped) return null
+            return tracker ?: acquire(this, rpcSource, factory).also { tracker = it }
+        }
+
+        override var listener: IRpcSyncerListener? = null
+
+        override val source: String = tracker()?.feed?.syncer?.source ?: ""
+
+        override val state: SyncerState
+            get() = tracker.takeIf { isStarted }?.feed?.syncer?.state ?: SyncerState.NotReady(EthereumKit.SyncError.NotStarted())
+
+        override fun start() {
+            synchronized(this) { isStopped = false }
+
+            val tracker = tracker() ?: return
+            isStarted = true
+            tracker.start(this)
+        }
+
+        override fun stop() {
+            isStarted = false
+
+            val tracker = synchronized(this) {
+                isStopped = true
+                tracker.also { tracker = null }
+            } ?: return
+            tracker.stop(this)
+        }
+
+        override fun pause() {
+            if (isStarted) tracker()?.pause(this)
+        }
+
+        override fun resume() {
+            if (isStarted) tracker()?.resumeIfNeeded(this)
+        }
+
+        override fun <T : Any> single(rpc: JsonRpc<T>): Single<T> {
+            val tracker = tracker() ?: return Single.error(EthereumKit.SyncError.NotStarted())
+            return tracker.feed.syncer.single(rpc)
+        }
+    }
+
+    companion object {
+        private val trackers = mutableMapOf<RpcSource, ChainHeadTracker>()
+
+        // Last block height of the tracker running for the source, if any
+        fun lastBlockHeight(rpcSource: RpcSource): Long? {
+            return synchronized(trackers) { trackers[rpcSource] }?.lastBlockHeight
+        }
+
+        fun syncer(rpcSource: RpcSource, factory: () -> Feed): IRpcSyncer {
+            return Subscriber(rpcSource, factory)
+        }
+
+        private fun acquire(subscriber: Subscriber, rpcSource: RpcSource, factory: () -> Feed): ChainHeadTracker {
+            return synchronized(trackers) {
+                trackers.getOrPut(rpcSource) { ChainHeadTracker(rpcSource, factory()) }.also {
+                    it.subscribers.add(subscriber)
+                }
+            }
+        }
+
+        private fun release(subscriber: Subscriber, tracker: ChainHeadTracker): Boolean {
+            return synchronized(trackers) {
+                tracker.subscribers.remove(subscriber)
+
+                if (tracker.subscribers.isEmpty()) {
+                    trackers.remove(tracker.rpcSource, tracker)
+                    true
+                } else {
+                    false
+                }
+            }
+        }
+    }
+
+}
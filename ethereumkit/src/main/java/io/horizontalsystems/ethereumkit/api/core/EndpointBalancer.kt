@@ -0,0 +1,121 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+import io.reactivex.Single
+import java.net.URI
+import java.util.concurrent.atomic.AtomicBoolean
+
+class EndpointBalancer(
+    uris: List<URI>,
+    private val alpha: Double = 0.2,
+    private val quarantineThreshold: Int = 3,
+    private val minQuarantine: Long = 30_000,
+    private val maxQuarantine: Long = 300_000
+) {
+
+    data class EndpointScore(
+        val uri: URI,
+        val latency: Double?,
+        val errorRate: Double,
+        val inFlight: Int,
+        val quarantinedUntil: Long?,
+        val score: Double
+    )
+
+    private class Endpoint(val uri: URI) {
+        var latency: Double? = null
+        var errorRate = 0.0
+        var inFlight = 0
+        var consecutiveErrors = 0
+        var quarantineDuration = 0L
+        var quarantinedUntil = 0L
+    }
+
+    private val endpoints = uris.map { Endpoint(it) }
+    private val endpointsByUri = endpoints.associateBy { it.uri }
+
+    @Synchronized
+    fun orderedUris(): List<URI> {
+        val now = System.currentTimeMillis()
+        val (quarantined, healthy) = endpoints.partition { it.quarantinedUntil > now }
+
+        return healthy.shuffled().sortedBy { score(it) }.map { it.uri } +
+                quarantined.sortedBy { it.quarantinedUntil }.map { it.uri }
+    }
+
+    @Synchronized
+    fun scores(): List<EndpointScore> {
+        val now = System.currentTimeMillis()
+
+        return endpoints.map {
+            EndpointScore(
+                uri = it.uri,
+                latency = it.latency,
+                errorRate = it.errorRate,
+                inFlight = it.inFlight,
+                quarantinedUntil = it.quarantinedUntil.takeIf { until -> until > now },
+                score = score(it)
+            )
+        }
+    }
+
+    fun <T : Any> track(uri: URI, single: Single<T>): Single<T> {
+        val endpoint = endpointsByUri[uri] ?: return single
+
+        return Single.defer {
+            val startedAt = System.currentTimeMillis()
+            val completed = AtomicBoolean(false)
+
+            onStart(endpoint)
+            single
+                .doOnSuccess {
+                    if (completed.compareAndSet(false, true)) onSuccess(endpoint, System.currentTimeMillis() - startedAt)
+                }
+                .doOnError {
+                    if (completed.compareAndSet(false, true)) onError(endpoint)
+                }
+                .doOnDispose {
+                    if (completed.compareAndSet(false, true)) onCancel(endpoint)
+                }
+        }
+    }
+
+    private fun score(endpoint: Endpoint): Double {
+        val latency = endpoint.latency ?: 0.0
+        val successRate = (1 - endpoint.errorRate).coerceAtLeast(0.01)
+
+        return latency * (endpoint.inFlight + 1) / successRate
+    }
+
+    @Synchronized
+    private fun onStart(endpoint: Endpoint) {
+        endpoint.inFlight++
+    }
+
+    @Synchronized
+    private fun onCancel(endpoint: Endpoint) {
+        endpoint.inFlight--
+    }
+
+    @Synchronized
+    private fun onSuccess(endpoint: Endpoint, latency: Long) {
+        endpoint.inFlight--
+        endpoint.latency = endpoint.latency?.let { it + alpha * (latency - it) } ?: latency.toDouble()
+        endpoint.errorRate *= (1 - alpha)
+        endpoint.consecutiveErrors = 0
+        endpoint.quarantineDuration = 0
+    }
+
+    @Synchronized
+    private fun onError(endpoint: Endpoint) {
+        endpoint.inFlight--
+        endpoint.errorRate += alpha * (1 - endpoint.errorRate)
+        endpoint.consecutiveErrors++
+
+        if (endpoint.consecutiveErrors >= quarantineThreshold) {
+            endpoint.quarantineDuration = (endpoint.quarantineDuration * 2).coerceIn(minQuarantine, maxQuarantine)
+            endpoint.quarantinedUntil = System.currentTimeMillis() + endpoint.quarantineDuration
+            endpoint.consecutiveErrors = 0
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+import io.reactivex.Single
+import io.reactivex.disposables.Disposable
+import java.util.concurrent.ScheduledFuture
+import kotlin.math.pow
+
+class HeadPoller(
+    private val poll: () -> Single<Long>,
+    private val onHead: (Long) -> Unit,
+    initialInterval: Long,
+    private val minInterval: Long = 5_000,
+    private val maxInterval: Long = initialInterval * 4,
+    private val alpha: Double = 0.3
+) {
+
+    private var blockInterval = initialInterval.toDouble()
+    private var lastHead: Long? = null
+    private var lastHeadTime = 0L
+    private var idleCount = 0
+    private var errorCount = 0
+
+    private var isRunning = false
+    private var scheduledPoll: ScheduledFuture<*>? = null
+    private var pollDisposable: Disposable? = null
+
+    val nextInterval: Long
+        @Synchronized get() {
+            val backoff = when {
+                errorCount > 0 -> 2.0.pow(errorCount.coerceAtMost(6))
+                idleCount > 1 -> 1.5.pow((idleCount - 1).coerceAtMost(6))
+                else -> 1.0
+            }
+
+            return (blockInterval * backoff).toLong().coerceIn(minInterval, maxInterval)
+        }
+
+    @Synchronized
+    fun start() {
+        if (isRunning) return
+
+        isRunning = true
+        schedule(0)
+    }
+
+    @Synchronized
+    fun stop() {
+        isRunning = false
+
+        scheduledPoll?.cancel(false)
+        scheduledPoll = null
+        pollDisposable?.dispose()
+        pollDisposable = null
+    }
+
+    private fun schedule(delay: Long) {
+        scheduledPoll = PollingScheduler.schedule(delay) { onPoll() }
+    }
+
+    @Synchronized
+    private fun onPoll() {
+        if (!isRunning) return
+
+        pollDisposable = poll().subscribe({ head ->
+            if (handle(head)) {
+                onHead(head)
+            }
+        }, {
+            handleError()
+        })
+    }
+
+    @Synchronized
+    private fun handle(head: Long): Boolean {
+        val now = System.currentTimeMillis()
+        val previousHead = lastHead
+
+        errorCount = 0
+
+        val isNewHead = previousHead == null || head > previousHead
+
+        if (isNewHead) {
+            if (previousHead != null) {
+                val observedInterval = (now - lastHeadTime).toDouble() / (head - previousHead)
+                blockInterval += alpha * (observedInterval - blockInterval)
+            }
+
+            lastHead = head
+            lastHeadTime = now
+            idleCount = 0
+        } else {
+            idleCount++
+        }
+
+        if (isRunning) {
+            schedule(nextInterval)
+        }
+
+        return isNewHead
+    }
+
+    @Synchronized
+    private fun handleError() {
+        errorCount++
+
+        if (isRunning) {
+            schedule(nextInterval)
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+import io.reactivex.Single
+import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.schedulers.Schedulers
+import java.net.URI
+import java.util.concurrent.TimeUnit
+
+class HedgedFailover(
+    private val latencyTracker: LatencyTracker = LatencyTracker(),
+    private val hedgePercentile: Double = 0.95,
+    private val minHedgeDelay: Long = 200,
+    private val maxHedgeDelay: Long = 3000
+) {
+
+    val hedgeDelay: Long
+        get() = latencyTracker.percentile(hedgePercentile)?.coerceIn(minHedgeDelay, maxHedgeDelay) ?: maxHedgeDelay
+
+    fun <R : Any> single(uris: List<URI>, isTerminal: (Throwable) -> Boolean, attempt: (URI) -> Single<R>): Single<R> {
+        return Single.create { emitter ->
+            val disposables = CompositeDisposable()
+            emitter.setDisposable(disposables)
+
+            val lock = Any()
+            var nextIndex = 0
+            var running = 0
+            var finished = false
+            var terminalError: Throwable? = null
+            var lastError: Throwable = NodeApiProvider.ApiProviderError.ApiUrlNotFound
+
+            fun finishWithError() {
+                finished = true
+                emitter.onError(terminalError ?: lastError)
+            }
+
+            fun launch() {
+                if (finished || terminalError != null || nextIndex >= uris.size) return
+
+                val uri = uris[nextIndex++]
+                val startedAt = System.currentTimeMillis()
+                running++
+
+                if (nextIndex < uris.size) {
+                    disposables.add(Schedulers.computation().scheduleDirect({
+                        synchronized(lock) { launch() }
+                    }, hedgeDelay, TimeUnit.MILLISECONDS))
+                }
+
+                disposables.add(attempt(uri).subscribe({ result ->
+                    synchronized(lock) {
+                        if (finished) return@subscribe
+                        finished = true
+                    }
+                    latencyTracker.add(System.currentTimeMillis() - startedAt)
+                    emitter.onSuccess(result)
+                    disposables.dispose()
+                }, { error ->
+                    synchronized(lock) {
+                        if (finished) return@subscribe
+                        running--
+                        lastError = error
+                        if (isTerminal(error)) {
+                            terminalError = error
+                        }
+
+                        launch()
+
+                        if (running == 0) {
+                            finishWithError()
+                        }
+                    }
+                }))
+            }
+
+            synchronized(lock) {
+                launch()
+                if (running == 0 && !finished) {
+                    finishWithError()
+                }
+            }
+        }
+    }
+
+}
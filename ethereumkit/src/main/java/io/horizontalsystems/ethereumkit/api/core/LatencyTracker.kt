@@ -0,0 +1,27 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+class LatencyTracker(
+    private val capacity: Int = 100,
+    private val minSamples: Int = 20
+) {
+    private val samples = LongArray(capacity)
+    private var count = 0
+    private var position = 0
+
+    @Synchronized
+    fun add(latencyMillis: Long) {
+        samples[position] = latencyMillis
+        position = (position + 1) % capacity
+        if (count < capacity) count++
+    }
+
+    @Synchronized
+    fun percentile(percentile: Double): Long? {
+        if (count < minSamples) return null
+
+        val sorted = samples.copyOf(count).apply { sort() }
+        val index = ((count - 1) * percentile).toInt()
+
+        return sorted[index]
+    }
+}
@@ -0,0 +1,38 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+import io.horizontalsystems.ethereumkit.core.toHexString
+import io.horizontalsystems.ethereumkit.models.Address
+import io.reactivex.Single
+import java.util.concurrent.ConcurrentHashMap
+
+// Shares results of eth_call at Latest within a block: the same call made again before the next block height is
+// known reuses the request in flight or its result. Calls are not memoized until a block height is known.
+class LatestCallMemo {
+
+    private val memo = ConcurrentHashMap<String, Single<ByteArray>>()
+
+    @Volatile
+    private var blockHeight: Long? = null
+
+    fun onUpdateBlockHeight(blockHeight: Long) {
+        if (this.blockHeight != blockHeight) {
+            this.blockHeight = blockHeight
+            memo.clear()
+        }
+    }
+
+    fun call(contractAddress: Address, data: ByteArray, aggregated: Boolean, call: () -> Single<ByteArray>): Single<ByteArray> {
+        val blockHeight = blockHeight ?: return call()
+
+        val key = "${contractAddress.hex}:${data.toHexString()}:$aggregated:$blockHeight"
+
+        return Single.defer {
+            memo.computeIfAbsent(key) {
+                call()
+                    .doOnError { memo.remove(key) }
+                    .cache()
+            }
+        }
+    }
+
+}
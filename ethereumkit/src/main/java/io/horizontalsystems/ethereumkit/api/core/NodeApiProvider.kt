@@ -1,12 +1,14 @@
 package io.horizontalsystems.ethereumkit.api.core
 
 import com.google.gson.Gson
+import com.google.gson.JsonElement
 import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
+import io.horizontalsystems.ethereumkit.network.HttpClientRegistry
 import io.reactivex.Single
 import okhttp3.Credentials
 import okhttp3.Interceptor
-import okhttp3.OkHttpClient
 import okhttp3.logging.HttpLoggingInterceptor
+import retrofit2.HttpException
 import retrofit2.Retrofit
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory
 import retrofit2.converter.gson.GsonConverterFactory
@@ -22,12 +24,19 @@ import java.util.logging.Logger
 class NodeApiProvider(
     private val uris: List<URI>,
     private val gson: Gson,
-    auth: String? = null
+    auth: String? = null,
+    batchOptions: BatchOptions? = null
 ) : IRpcApiProvider {
 
     private val logger = Logger.getLogger(this.javaClass.simpleName)
     private val service: InfuraService
     private var currentRpcId = AtomicInteger(0)
+    private val failover = HedgedFailover()
+    private val balancer = EndpointBalancer(uris)
+    private val batcher = batchOptions?.let { RpcBatcher(it, this::send) }
+
+    @Volatile
+    private var batchSupported = true
 
     init {
         val loggingInterceptor = HttpLoggingInterceptor { message -> logger.info(message) }
@@ -41,13 +50,13 @@ class NodeApiProvider(
             chain.proceed(requestBuilder.build())
         }
 
-        val httpClient = OkHttpClient.Builder()
+        val httpClient = HttpClientRegistry.newBuilder()
                 .addInterceptor(loggingInterceptor)
                 .addInterceptor(headersInterceptor)
 
         val retrofit = Retrofit.Builder()
                 .baseUrl("${uris.first()}/")
-                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.createAsync())
                 .addConverterFactory(ScalarsConverterFactory.create())
                 .addConverterFactory(GsonConverterFactory.create(gson))
                 .client(httpClient.build())
@@ -58,38 +67,123 @@ class NodeApiProvider(
 
     override val source: String = uris.first().host
 
+    val endpointScores: List<EndpointBalancer.EndpointScore>
+        get() = balancer.scores()
+
     override fun <T: Any> single(rpc: JsonRpc<T>): Single<T> {
         rpc.id = currentRpcId.addAndGet(1)
 
+        if (batcher == null || !batchSupported) {
+            return singleWithFallback(rpc)
+        }
+
         return Single.create { emitter ->
-            var error: Throwable = ApiProviderError.ApiUrlNotFound
-
-            for (uri in uris) {
-                try {
-                    val rpcResponse = service.single(uri, gson.toJson(rpc)).blockingGet()
-                    val response = rpc.parseResponse(rpcResponse, gson)
-
-                    emitter.onSuccess(response)
-                    return@create
-                } catch (throwable: Throwable) {
-                    error = throwable
-                    if (throwable is JsonRpc.ResponseError.RpcError) {
-                        break
+            val request = RpcBatcher.Request(rpc.id, gson.toJson(rpc), RpcHandler(
+                onSuccess = { rpcResponse ->
+                    try {
+                        emitter.onSuccess(rpc.parseResponse(rpcResponse, gson))
+                    } catch (error: JsonRpc.ResponseError.InvalidResult) {
+                        if (uris.size > 1 && !isTerminal(rpc, error)) {
+                            emitter.setDisposable(singleWithFallback(rpc).subscribe(emitter::onSuccess, emitter::onError))
+                        } else {
+                            emitter.onError(error)
+                        }
+                    } catch (error: Throwable) {
+                        emitter.onError(error)
+                    }
+                },
+                onError = { emitter.onError(it) }
+            ))
+
+            emitter.setCancellable { batcher.cancel(request) }
+            batcher.enqueue(request)
+        }
+    }
+
+    private fun <T: Any> singleWithFallback(rpc: JsonRpc<T>): Single<T> {
+        val payload = gson.toJson(rpc)
+
+        // Deferred, so that a resubscription, e.g. a retry, takes the node order at that time
+        return Single.defer {
+            failover.single(balancer.orderedUris(), { isTerminal(rpc, it) }) { uri ->
+                balancer.track(uri, service.single(uri, payload)).map { rpc.parseResponse(it, gson) }
+            }
+        }
+    }
+
+    private fun isTerminal(rpc: JsonRpc<*>, error: Throwable) =
+        error is JsonRpc.ResponseError.RpcError || (rpc.isNullResultValid && error is JsonRpc.ResponseError.NullResult)
+
+    private fun send(requests: List<RpcBatcher.Request>) {
+        if (requests.size == 1 || !batchSupported) {
+            requests.forEach { sendSingle(it) }
+            return
+        }
+
+        val payload = requests.joinToString(separator = ",", prefix = "[", postfix = "]") { it.payload }
+
+        Single
+            .defer {
+                failover.single(balancer.orderedUris(), this::isBatchRejection) { uri ->
+                    balancer.track(uri, service.batch(uri, payload)).map { response ->
+                        if (!response.isJsonArray) {
+                            throw ApiProviderError.BatchNotSupported
+                        }
+                        response.asJsonArray.map { gson.fromJson(it, RpcResponse::class.java) }
                     }
                 }
             }
-            emitter.onError(error)
+            .subscribe({ responses ->
+                dispatch(requests, responses)
+            }, { error ->
+                if (isBatchRejection(error)) {
+                    logger.info("Batch requests are not supported by $source, falling back to single requests")
+                    batchSupported = false
+                    requests.forEach { sendSingle(it) }
+                } else {
+                    requests.forEach { it.handler.onError(error) }
+                }
+            })
+    }
+
+    private fun dispatch(requests: List<RpcBatcher.Request>, responses: List<RpcResponse>) {
+        val responsesById = responses.associateBy { it.id }
+
+        for (request in requests) {
+            val response = responsesById[request.id]
+            if (response != null) {
+                request.handler.onSuccess(response)
+            } else {
+                sendSingle(request)
+            }
         }
     }
 
+    private fun sendSingle(request: RpcBatcher.Request) {
+        Single
+            .defer { failover.single(balancer.orderedUris(), { false }) { uri -> balancer.track(uri, service.single(uri, request.payload)) } }
+            .subscribe(request.handler.onSuccess, request.handler.onError)
+    }
+
+    private fun isBatchRejection(error: Throwable) = when (error) {
+        is ApiProviderError.BatchNotSupported -> true
+        is HttpException -> error.code() in 400..499 && error.code() != 408 && error.code() != 429
+        else -> false
+    }
+
     private interface InfuraService {
         @POST
         @Headers("Content-Type: application/json", "Accept: application/json")
         fun single(@Url uri: URI, @Body jsonRpc: String): Single<RpcResponse>
+
+        @POST
+        @Headers("Content-Type: application/json", "Accept: application/json")
+        fun batch(@Url uri: URI, @Body jsonRpcs: String): Single<JsonElement>
     }
 
     sealed class ApiProviderError : Throwable() {
         object ApiUrlNotFound : ApiProviderError()
+        object BatchNotSupported : ApiProviderError()
     }
 
 }
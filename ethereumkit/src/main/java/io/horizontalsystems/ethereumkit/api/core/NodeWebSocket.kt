@@ -11,12 +11,12 @@ import com.tinder.scarlet.websocket.okhttp.newWebSocketFactory
 import com.tinder.scarlet.ws.Receive
 import com.tinder.scarlet.ws.Send
 import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
+import io.horizontalsystems.ethereumkit.network.HttpClientRegistry
 import io.reactivex.Flowable
 import io.reactivex.disposables.CompositeDisposable
 import io.reactivex.schedulers.Schedulers
 import okhttp3.Credentials
 import okhttp3.Interceptor
-import okhttp3.OkHttpClient
 import okhttp3.logging.HttpLoggingInterceptor
 import java.net.URI
 import java.util.logging.Logger
@@ -62,7 +62,7 @@ class NodeWebSocket(
             chain.proceed(requestBuilder.build())
         }
 
-        val okHttpClient = OkHttpClient.Builder()
+        val okHttpClient = HttpClientRegistry.newBuilder()
                 .addInterceptor(headersInterceptor)
                 .addInterceptor(loggingInterceptor)
                 .build()
@@ -0,0 +1,22 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+object PollingScheduler {
+
+    private const val threadCount = 2
+
+    private val threadNumber = AtomicInteger(0)
+    private val executor: ScheduledExecutorService = Executors.newScheduledThreadPool(threadCount) { runnable ->
+        Thread(runnable, "ethereumkit-polling-${threadNumber.incrementAndGet()}").apply { isDaemon = true }
+    }
+
+    fun schedule(delayMillis: Long, task: () -> Unit): ScheduledFuture<*> {
+        return executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS)
+    }
+
+}
@@ -0,0 +1,55 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
+import java.util.concurrent.TimeUnit
+
+data class BatchOptions(
+    val maxSize: Int = 20,
+    val windowMillis: Long = 10
+)
+
+class RpcBatcher(
+    private val options: BatchOptions,
+    private val sender: (List<Request>) -> Unit
+) {
+
+    class Request(val id: Int, val payload: String, val handler: RpcHandler)
+
+    private val pending = mutableListOf<Request>()
+    private var flushTask: Disposable? = null
+
+    @Synchronized
+    fun enqueue(request: Request) {
+        pending.add(request)
+
+        if (pending.size >= options.maxSize) {
+            flush()
+        } else if (flushTask == null) {
+            flushTask = Schedulers.computation().scheduleDirect({ onFlushTimer() }, options.windowMillis, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    @Synchronized
+    fun cancel(request: Request) {
+        pending.remove(request)
+    }
+
+    @Synchronized
+    private fun onFlushTimer() {
+        flush()
+    }
+
+    private fun flush() {
+        flushTask?.dispose()
+        flushTask = null
+
+        if (pending.isEmpty()) return
+
+        val requests = pending.toList()
+        pending.clear()
+
+        Schedulers.io().scheduleDirect { sender(requests) }
+    }
+
+}
@@ -17,6 +17,7 @@ import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcBlock
 import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcTransaction
 import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcTransactionReceipt
 import io.horizontalsystems.ethereumkit.api.models.AccountState
+import io.horizontalsystems.ethereumkit.contracts.Multicall3
 import io.horizontalsystems.ethereumkit.core.EthereumKit
 import io.horizontalsystems.ethereumkit.core.EthereumKit.SyncState
 import io.horizontalsystems.ethereumkit.core.IApiStorage
@@ -25,7 +26,9 @@ import io.horizontalsystems.ethereumkit.core.IBlockchainListener
 import io.horizontalsystems.ethereumkit.core.INonceProvider
 import io.horizontalsystems.ethereumkit.core.RpcApiProviderFactory
 import io.horizontalsystems.ethereumkit.core.TransactionBuilder
+import io.horizontalsystems.ethereumkit.core.toHexString
 import io.horizontalsystems.ethereumkit.models.Address
+import io.horizontalsystems.ethereumkit.models.Chain
 import io.horizontalsystems.ethereumkit.models.DefaultBlockParameter
 import io.horizontalsystems.ethereumkit.models.GasPrice
 import io.horizontalsystems.ethereumkit.models.RawTransaction
@@ -42,12 +45,20 @@ class RpcBlockchain(
     private val address: Address,
     private val storage: IApiStorage,
     private val syncer: IRpcSyncer,
-    private val transactionBuilder: TransactionBuilder
+    private val transactionBuilder: TransactionBuilder,
+    private val chain: Chain
 ) : IBlockchain, IRpcSyncerListener, INonceProvider {
 
     private val disposables = CompositeDisposable()
+    private val resultCache = RpcResultCache()
+    private val callMemo = LatestCallMemo()
+    private val multicall = Multicall3(Multicall3.address(chain), { contractAddress, data ->
+        syncer.single(callRpc(contractAddress, data, DefaultBlockParameter.Latest))
+    })
 
     private fun onUpdateLastBlockHeight(lastBlockHeight: Long) {
+        callMemo.onUpdateBlockHeight(lastBlockHeight)
+
         storage.saveLastBlockHeight(lastBlockHeight)
         listener?.onUpdateLastBlockHeight(lastBlockHeight)
     }
@@ -158,15 +169,51 @@ class RpcBlockchain(
     }
 
     override fun getTransactionReceipt(transactionHash: ByteArray): Single<RpcTransactionReceipt> {
-        return syncer.single(GetTransactionReceiptJsonRpc(transactionHash))
+        return cachedSingle(
+            key = "receipt:${transactionHash.toHexString()}",
+            single = syncer.single(GetTransactionReceiptJsonRpc(transactionHash)),
+            blockNumber = { it.blockNumber },
+            size = { receipt -> 512 + receipt.logs.sumOf { 128 + it.data.size + it.topics.size * 66 } }
+        )
     }
 
     override fun getTransaction(transactionHash: ByteArray): Single<RpcTransaction> {
-        return syncer.single(GetTransactionByHashJsonRpc(transactionHash))
+        return cachedSingle(
+            key = "transaction:${transactionHash.toHexString()}",
+            single = syncer.single(GetTransactionByHashJsonRpc(transactionHash)),
+            blockNumber = { it.blockNumber },
+            size = { 256 + it.input.size }
+        )
     }
 
     override fun getBlock(blockNumber: Long): Single<RpcBlock> {
-        return syncer.single(GetBlockByNumberJsonRpc(blockNumber))
+        return cachedSingle(
+            key = "block:$blockNumber",
+            single = syncer.single(GetBlockByNumberJsonRpc(blockNumber)),
+            blockNumber = { it.number },
+            size = { 64 + (it.logsBloom?.size ?: 0) }
+        )
+    }
+
+    val resultCacheHits: Long
+        get() = resultCache.hits
+
+    val resultCacheMisses: Long
+        get() = resultCache.misses
+
+    private fun <T : Any> cachedSingle(key: String, single: Single<T>, blockNumber: (T) -> Long?, size: (T) -> Int): Single<T> {
+        return Single.defer {
+            resultCache.get<T>(key)?.let { return@defer Single.just(it) }
+
+            single.doOnSuccess { result ->
+                val lastBlockHeight = storage.getLastBlockHeight() ?: return@doOnSuccess
+                val resultBlockNumber = blockNumber(result) ?: return@doOnSuccess
+
+                if (resultBlockNumber <= lastBlockHeight - chain.confirmationDepth) {
+                    resultCache.put(key, result, size(result))
+                }
+            }
+        }
     }
 
     override fun getLogs(
@@ -206,7 +253,7 @@ class RpcBlockchain(
         val requestSingles: MutableList<Single<RpcBlock>> = mutableListOf()
 
         for ((blockNumber, _) in logsByBlockNumber) {
-            requestSingles.add(syncer.single(GetBlockByNumberJsonRpc(blockNumber)))
+            requestSingles.add(getBlock(blockNumber))
         }
 
         return Single.merge(requestSingles).toList().map { blocks ->
@@ -228,8 +275,23 @@ class RpcBlockchain(
         return syncer.single(GetStorageAtJsonRpc(contractAddress, position, defaultBlockParameter))
     }
 
-    override fun call(contractAddress: Address, data: ByteArray, defaultBlockParameter: DefaultBlockParameter): Single<ByteArray> {
-        return syncer.single(callRpc(contractAddress, data, defaultBlockParameter))
+    // Calls at Latest are batched through Multicall3, where the target sees the Multicall3 contract as msg.sender, when
+    // aggregate is true, or when it is null and the method is known not to depend on msg.sender. Otherwise, and with
+    // aggregate false, a plain eth_call is made.
+    override fun call(contractAddress: Address, data: ByteArray, defaultBlockParameter: DefaultBlockParameter, aggregate: Boolean?): Single<ByteArray> {
+        if (defaultBlockParameter != DefaultBlockParameter.Latest) {
+            return syncer.single(callRpc(contractAddress, data, defaultBlockParameter))
+        }
+
+        val aggregated = aggregate ?: Multicall3.isSenderIndependent(data)
+
+        return callMemo.call(contractAddress, data, aggregated) {
+            if (aggregated) {
+                multicall.call(contractAddress, data)
+            } else {
+                syncer.single(callRpc(contractAddress, data, defaultBlockParameter))
+            }
+        }
     }
 
     override fun <T: Any> rpcSingle(rpc: JsonRpc<T>): Single<T> {
@@ -269,10 +331,11 @@ class RpcBlockchain(
             address: Address,
             storage: IApiStorage,
             syncer: IRpcSyncer,
-            transactionBuilder: TransactionBuilder
+            transactionBuilder: TransactionBuilder,
+            chain: Chain
         ): RpcBlockchain {
 
-            val rpcBlockchain = RpcBlockchain(address, storage, syncer, transactionBuilder)
+            val rpcBlockchain = RpcBlockchain(address, storage, syncer, transactionBuilder, chain)
             syncer.listener = rpcBlockchain
 
             return rpcBlockchain
@@ -0,0 +1,28 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+import com.google.gson.Gson
+import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
+import io.reactivex.Single
+import java.util.concurrent.ConcurrentHashMap
+
+class RpcCoalescer(private val gson: Gson) {
+
+    private val nonCoalescedMethods = setOf("eth_sendRawTransaction", "eth_subscribe", "eth_unsubscribe")
+    private val inFlight = ConcurrentHashMap<String, Single<*>>()
+
+    fun <T : Any> single(rpc: JsonRpc<T>, source: (JsonRpc<T>) -> Single<T>): Single<T> {
+        if (rpc.method in nonCoalescedMethods) return source(rpc)
+
+        val key = rpc.method + gson.toJson(rpc.params)
+
+        return Single.defer {
+            @Suppress("UNCHECKED_CAST")
+            inFlight.computeIfAbsent(key) {
+                source(rpc)
+                    .doFinally { inFlight.remove(key) }
+                    .cache()
+            } as Single<T>
+        }
+    }
+
+}
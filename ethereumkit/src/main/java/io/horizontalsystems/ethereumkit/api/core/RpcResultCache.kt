@@ -0,0 +1,55 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+class RpcResultCache(
+    private val maxEntries: Int = 1000,
+    private val maxBytes: Long = 4 * 1024 * 1024
+) {
+
+    private class Entry(val value: Any, val size: Int)
+
+    private val entries = LinkedHashMap<String, Entry>(16, 0.75f, true)
+    private var bytes = 0L
+
+    private var hitCount = 0L
+    private var missCount = 0L
+
+    val hits: Long
+        @Synchronized get() = hitCount
+
+    val misses: Long
+        @Synchronized get() = missCount
+
+    @Synchronized
+    fun <T : Any> get(key: String): T? {
+        val entry = entries[key]
+        if (entry == null) {
+            missCount++
+            return null
+        }
+
+        hitCount++
+        @Suppress("UNCHECKED_CAST")
+        return entry.value as T
+    }
+
+    @Synchronized
+    fun put(key: String, value: Any, size: Int) {
+        if (size > maxBytes) return
+
+        entries.put(key, Entry(value, size))?.let { bytes -= it.size }
+        bytes += size
+
+        val iterator = entries.values.iterator()
+        while ((entries.size > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            bytes -= iterator.next().size
+            iterator.remove()
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        bytes = 0
+    }
+
+}
@@ -20,6 +20,7 @@ class WebSocketRpcSyncer(
     private var currentRpcId = AtomicInteger(0)
     private var rpcHandlers = ConcurrentHashMap<Int, RpcHandler>()
     private var subscriptionHandlers = ConcurrentHashMap<String, SubscriptionHandler>()
+    private val coalescer = RpcCoalescer(gson)
 
     //region IRpcSyncer
     override var listener: IRpcSyncerListener? = null
@@ -50,7 +51,10 @@ class WebSocketRpcSyncer(
 
     override fun resume() = Unit
 
-    override fun <T: Any> single(rpc: JsonRpc<T>): Single<T> {
+    override fun <T: Any> single(rpc: JsonRpc<T>): Single<T> =
+        coalescer.single(rpc, this::sendSingle)
+
+    private fun <T: Any> sendSingle(rpc: JsonRpc<T>): Single<T> {
         return Single.create { emitter ->
             send(
                     rpc = rpc,
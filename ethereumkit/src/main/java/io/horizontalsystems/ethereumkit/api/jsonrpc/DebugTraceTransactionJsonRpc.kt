@@ -0,0 +1,15 @@
+package io.horizontalsystems.ethereumkit.api.jsonrpc
+
+import com.google.gson.reflect.TypeToken
+import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcCallFrame
+import java.lang.reflect.Type
+
+class DebugTraceTransactionJsonRpc(
+        @Transient val transactionHash: ByteArray
+) : JsonRpc<RpcCallFrame>(
+        method = "debug_traceTransaction",
+        params = listOf(transactionHash, mapOf("tracer" to "callTracer"))
+) {
+    @Transient
+    override val typeOfResult: Type = object : TypeToken<RpcCallFrame>() {}.type
+}
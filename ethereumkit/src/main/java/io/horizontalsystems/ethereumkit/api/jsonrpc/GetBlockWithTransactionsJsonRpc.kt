@@ -0,0 +1,15 @@
+package io.horizontalsystems.ethereumkit.api.jsonrpc
+
+import com.google.gson.reflect.TypeToken
+import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcBlockWithTransactions
+import java.lang.reflect.Type
+
+class GetBlockWithTransactionsJsonRpc(
+        @Transient val blockNumber: Long
+) : JsonRpc<RpcBlockWithTransactions>(
+        method = "eth_getBlockByNumber",
+        params = listOf(blockNumber, true)
+) {
+    @Transient
+    override val typeOfResult: Type = object : TypeToken<RpcBlockWithTransactions>() {}.type
+}
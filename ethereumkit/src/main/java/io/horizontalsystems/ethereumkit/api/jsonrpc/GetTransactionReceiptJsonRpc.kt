@@ -12,4 +12,7 @@ class GetTransactionReceiptJsonRpc(
 ) {
     @Transient
     override val typeOfResult: Type = object : TypeToken<RpcTransactionReceipt>() {}.type
+
+    override val isNullResultValid: Boolean
+        get() = true
 }
@@ -16,6 +16,10 @@ abstract class JsonRpc<T>(
 
     protected abstract val typeOfResult: Type
 
+    // A null result is a valid answer of the node, e.g. no receipt yet, so other nodes are not asked for it
+    open val isNullResultValid: Boolean
+        get() = false
+
     fun parseResponse(response: RpcResponse, gson: Gson): T {
         if (response.error != null) {
             throw ResponseError.RpcError(response.error)
@@ -23,7 +27,7 @@ abstract class JsonRpc<T>(
 
         val result = parseResult(response.result, gson)
         if (result == null) {
-            throw ResponseError.InvalidResult(result.toString())
+            throw ResponseError.NullResult()
         }
 
         return result
@@ -37,6 +41,7 @@ abstract class JsonRpc<T>(
 
     sealed class ResponseError : Throwable() {
         class RpcError(val error: RpcResponse.Error) : ResponseError()
-        class InvalidResult(val result: Any?) : ResponseError()
+        open class InvalidResult(val result: Any?) : ResponseError()
+        class NullResult : InvalidResult(null)
     }
 }
@@ -0,0 +1,26 @@
+package io.horizontalsystems.ethereumkit.api.jsonrpc
+
+import com.google.gson.reflect.TypeToken
+import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcTrace
+import io.horizontalsystems.ethereumkit.models.Address
+import java.lang.reflect.Type
+
+class TraceFilterJsonRpc(
+        @Transient val fromBlock: Long,
+        @Transient val toBlock: Long,
+        @Transient val fromAddress: List<Address>?,
+        @Transient val toAddress: List<Address>?
+) : JsonRpc<List<RpcTrace>>(
+        method = "trace_filter",
+        params = listOf(TraceFilterParams(fromBlock, toBlock, fromAddress, toAddress))
+) {
+    @Transient
+    override val typeOfResult: Type = object : TypeToken<List<RpcTrace>>() {}.type
+
+    data class TraceFilterParams(
+            val fromBlock: Long,
+            val toBlock: Long,
+            val fromAddress: List<Address>?,
+            val toAddress: List<Address>?
+    )
+}
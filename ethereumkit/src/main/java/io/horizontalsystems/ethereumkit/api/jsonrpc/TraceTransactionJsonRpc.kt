@@ -0,0 +1,15 @@
+package io.horizontalsystems.ethereumkit.api.jsonrpc
+
+import com.google.gson.reflect.TypeToken
+import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcTrace
+import java.lang.reflect.Type
+
+class TraceTransactionJsonRpc(
+        @Transient val transactionHash: ByteArray
+) : JsonRpc<List<RpcTrace>>(
+        method = "trace_transaction",
+        params = listOf(transactionHash)
+) {
+    @Transient
+    override val typeOfResult: Type = object : TypeToken<List<RpcTrace>>() {}.type
+}
@@ -1,3 +1,3 @@
 package io.horizontalsystems.ethereumkit.api.jsonrpc.models
 
-data class RpcBlock(val number: Long, val timestamp: Long)
+data class RpcBlock(val number: Long, val timestamp: Long, val logsBloom: ByteArray? = null, val hash: ByteArray? = null)
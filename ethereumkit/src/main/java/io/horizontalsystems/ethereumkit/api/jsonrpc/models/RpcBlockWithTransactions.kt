@@ -0,0 +1,9 @@
+package io.horizontalsystems.ethereumkit.api.jsonrpc.models
+
+data class RpcBlockWithTransactions(
+        val number: Long,
+        val timestamp: Long,
+        val logsBloom: ByteArray?,
+        val hash: ByteArray?,
+        val transactions: List<RpcTransaction>
+)
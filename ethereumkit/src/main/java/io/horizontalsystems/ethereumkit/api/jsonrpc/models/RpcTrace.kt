@@ -0,0 +1,33 @@
+package io.horizontalsystems.ethereumkit.api.jsonrpc.models
+
+import io.horizontalsystems.ethereumkit.models.Address
+import java.math.BigInteger
+
+// Trace of trace_filter and trace_transaction. Block number and trace address are plain JSON numbers, not hex
+data class RpcTrace(
+        val action: Action,
+        val blockNumber: String?,
+        val transactionHash: ByteArray?,
+        val traceAddress: List<String>,
+        val type: String,
+        val error: String?
+) {
+
+    data class Action(
+            val callType: String?,
+            val from: Address?,
+            val to: Address?,
+            val value: BigInteger?
+    )
+
+}
+
+// Frame of debug_traceTransaction with callTracer
+data class RpcCallFrame(
+        val type: String,
+        val from: Address?,
+        val to: Address?,
+        val value: BigInteger?,
+        val error: String?,
+        val calls: List<RpcCallFrame>?
+)
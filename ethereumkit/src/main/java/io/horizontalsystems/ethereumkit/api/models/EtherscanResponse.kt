@@ -1,7 +1,12 @@
 package io.horizontalsystems.ethereumkit.api.models
 
-data class EtherscanResponse(
+data class EtherscanResponse<T>(
         val status: String,
         val message: String,
-        val result: List<Map<String, String>>
+        val result: List<T>,
+        // rows received from the API, including ones that could not be decoded
+        val rowCount: Int = result.size,
+        // block numbers of the first and last received rows, including ones that could not be decoded
+        val firstRowBlock: Long? = null,
+        val lastRowBlock: Long? = null
 )
@@ -0,0 +1,188 @@
+package io.horizontalsystems.ethereumkit.contracts
+
+import com.google.gson.JsonPrimitive
+import io.horizontalsystems.ethereumkit.api.core.RpcResponse
+import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
+import io.horizontalsystems.ethereumkit.core.toHexString
+import io.horizontalsystems.ethereumkit.core.toRawHexString
+import io.horizontalsystems.ethereumkit.models.Address
+import io.horizontalsystems.ethereumkit.models.Chain
+import io.reactivex.Single
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
+import java.util.concurrent.TimeUnit
+
+// Aggregates eth_call requests made within a short window into aggregate3 calls. Batched calls are executed by the
+// Multicall3 contract, so msg.sender of the target is the Multicall3 address instead of the zero address of a plain
+// eth_call without sender. Calls whose result depends on msg.sender must not be made through it, so callers only
+// route calls of senderIndependentSelectors or calls they explicitly opt in.
+class Multicall3(
+    private val contractAddress: Address,
+    private val rawCall: (Address, ByteArray) -> Single<ByteArray>,
+    private val windowMillis: Long = 20,
+    private val maxCalldataSize: Int = 32 * 1024,
+    private val gasBudget: Long = 30_000_000,
+    private val gasPerCall: Long = 250_000
+) {
+
+    private class PendingCall(val call: Multicall3Method.Call, val onSuccess: (ByteArray) -> Unit, val onError: (Throwable) -> Unit)
+
+    private val pendingCalls = mutableListOf<PendingCall>()
+    private var flushTask: Disposable? = null
+
+    fun call(target: Address, data: ByteArray): Single<ByteArray> {
+        return Single.create { emitter ->
+            val pendingCall = PendingCall(Multicall3Method.Call(target, data), emitter::onSuccess, emitter::tryOnError)
+
+            emitter.setCancellable { cancel(pendingCall) }
+            enqueue(pendingCall)
+        }
+    }
+
+    fun call(target: Address, method: ContractMethod): Single<ByteArray> {
+        return call(target, method.encodedABI())
+    }
+
+    fun aggregate(calls: List<Multicall3Method.Call>): Single<List<Multicall3Method.Result>> {
+        if (calls.isEmpty()) return Single.just(listOf())
+
+        return Single
+            .concat(chunked(calls).map { aggregateChunk(it) })
+            .toList()
+            .map { it.flatten() }
+    }
+
+    @Synchronized
+    private fun enqueue(pendingCall: PendingCall) {
+        pendingCalls.add(pendingCall)
+
+        if (flushTask == null) {
+            flushTask = Schedulers.computation().scheduleDirect({ flush() }, windowMillis, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    @Synchronized
+    private fun cancel(pendingCall: PendingCall) {
+        pendingCalls.remove(pendingCall)
+    }
+
+    private fun flush() {
+        val calls = synchronized(this) {
+            flushTask = null
+            pendingCalls.toList().also { pendingCalls.clear() }
+        }
+
+        if (calls.size == 1) {
+            val pendingCall = calls.first()
+            rawCall(pendingCall.call.target, pendingCall.call.data).subscribe(pendingCall.onSuccess, pendingCall.onError)
+            return
+        }
+
+        var chunkStart = 0
+        for (chunk in chunked(calls.map { it.call })) {
+            val chunkCalls = calls.subList(chunkStart, chunkStart + chunk.size)
+            chunkStart += chunk.size
+
+            aggregateResults(chunk).subscribe({ results ->
+                chunkCalls.zip(results).forEach { (pendingCall, result) ->
+                    if (result.success) {
+                        pendingCall.onSuccess(result.returnData)
+                    } else {
+                        plainCall(pendingCall, result.returnData)
+                    }
+                }
+            }, {
+                chunkCalls.forEach { plainCall(it, null) }
+            })
+        }
+    }
+
+    // A call failed in the aggregate may have failed only there, e.g. out of gas under the shared gas budget, so it is
+    // made again as a plain eth_call. When that one cannot tell the reason, the revert data of the aggregate is kept.
+    private fun plainCall(pendingCall: PendingCall, revertData: ByteArray?) {
+        rawCall(pendingCall.call.target, pendingCall.call.data).subscribe(pendingCall.onSuccess, { error ->
+            pendingCall.onError(
+                when {
+                    revertData == null -> error
+                    error is JsonRpc.ResponseError.RpcError && error.error.data != null -> error
+                    error is JsonRpc.ResponseError.RpcError -> JsonRpc.ResponseError.RpcError(error.error.copy(data = revertData(revertData)))
+                    else -> executionReverted(revertData)
+                }
+            )
+        })
+    }
+
+    private fun aggregateResults(calls: List<Multicall3Method.Call>): Single<List<Multicall3Method.Result>> {
+        return rawCall(contractAddress, Multicall3Method(calls).encodedABI())
+            .map { Multicall3Method.decodeResults(it) }
+            .flatMap { results ->
+                if (results.size == calls.size) Single.just(results) else Single.error(AggregateError.InvalidResponse)
+            }
+    }
+
+    private fun aggregateChunk(calls: List<Multicall3Method.Call>): Single<List<Multicall3Method.Result>> {
+        return aggregateResults(calls)
+            .onErrorResumeNext { _: Throwable ->
+                Single.concat(calls.map { individualCall(it) }).toList()
+            }
+    }
+
+    private fun individualCall(call: Multicall3Method.Call): Single<Multicall3Method.Result> {
+        return rawCall(call.target, call.data)
+            .map { Multicall3Method.Result(true, it) }
+            .onErrorResumeNext { error: Throwable ->
+                if (call.allowFailure && error is JsonRpc.ResponseError.RpcError) {
+                    Single.just(Multicall3Method.Result(false, byteArrayOf()))
+                } else {
+                    Single.error(error)
+                }
+            }
+    }
+
+    private fun chunked(calls: List<Multicall3Method.Call>): List<List<Multicall3Method.Call>> {
+        val maxCallsByGas = (gasBudget / gasPerCall).toInt().coerceAtLeast(1)
+        val chunks = mutableListOf<List<Multicall3Method.Call>>()
+        var chunk = mutableListOf<Multicall3Method.Call>()
+        var chunkSize = 0
+
+        for (call in calls) {
+            if (chunk.isNotEmpty() && (chunk.size >= maxCallsByGas || chunkSize + call.encodedSize > maxCalldataSize)) {
+                chunks.add(chunk)
+                chunk = mutableListOf()
+                chunkSize = 0
+            }
+            chunk.add(call)
+            chunkSize += call.encodedSize
+        }
+
+        if (chunk.isNotEmpty()) {
+            chunks.add(chunk)
+        }
+
+        return chunks
+    }
+
+    sealed class AggregateError : Throwable() {
+        object InvalidResponse : AggregateError()
+    }
+
+    companion object {
+        // balanceOf(address), balanceOf(address,uint256), allowance(address,address), ownerOf(uint256), getReserves()
+        private val senderIndependentSelectors = setOf("70a08231", "00fdd58e", "dd62ed3e", "6352211e", "0902f1ac")
+
+        fun isSenderIndependent(data: ByteArray): Boolean =
+            data.size >= 4 && data.copyOfRange(0, 4).toRawHexString() in senderIndependentSelectors
+
+        private fun executionReverted(revertData: ByteArray): Throwable =
+            JsonRpc.ResponseError.RpcError(RpcResponse.Error(3, "execution reverted", revertData(revertData)))
+
+        private fun revertData(revertData: ByteArray) =
+            if (revertData.isEmpty()) null else JsonPrimitive(revertData.toHexString())
+
+        fun address(chain: Chain): Address = when (chain) {
+            Chain.ZkSync -> Address("0xf9cda624fbc7e059355ce98a31693d299facd963")
+            else -> Address("0xca11bde05977b3631167028862be2a173976ca11")
+        }
+    }
+
+}
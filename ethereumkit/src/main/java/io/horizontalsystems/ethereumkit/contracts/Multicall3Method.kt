@@ -0,0 +1,64 @@
+package io.horizontalsystems.ethereumkit.contracts
+
+import io.horizontalsystems.ethereumkit.models.Address
+import java.math.BigInteger
+
+class Multicall3Method(val calls: List<Call>) : ContractMethod() {
+    override val methodSignature = "aggregate3((address,bool,bytes)[])"
+
+    class Call(val target: Address, val data: ByteArray, val allowFailure: Boolean = true) {
+        val encodedSize: Int
+            get() = 4 * 32 + paddedSize(data.size)
+    }
+
+    class Result(val success: Boolean, val returnData: ByteArray)
+
+    override fun encodedABI(): ByteArray {
+        val tuples = calls.map { call ->
+            word(call.target.raw) +
+                    word(if (call.allowFailure) 1 else 0) +
+                    word(3 * 32) +
+                    word(call.data.size) +
+                    call.data + ByteArray(paddedSize(call.data.size) - call.data.size)
+        }
+
+        var offset = calls.size * 32
+        var offsets = byteArrayOf()
+        for (tuple in tuples) {
+            offsets += word(offset)
+            offset += tuple.size
+        }
+
+        return tuples.fold(methodId + word(32) + word(calls.size) + offsets) { data, tuple -> data + tuple }
+    }
+
+    companion object {
+        fun decodeResults(data: ByteArray): List<Result> {
+            val arrayStart = readInt(data, 0)
+            val size = readInt(data, arrayStart)
+            val tuplesStart = arrayStart + 32
+
+            return (0 until size).map { index ->
+                val tupleStart = tuplesStart + readInt(data, tuplesStart + index * 32)
+                val success = readInt(data, tupleStart) != 0
+                val bytesStart = tupleStart + readInt(data, tupleStart + 32)
+                val bytesSize = readInt(data, bytesStart)
+
+                Result(success, data.copyOfRange(bytesStart + 32, bytesStart + 32 + bytesSize))
+            }
+        }
+
+        private fun paddedSize(size: Int) = (size + 31) / 32 * 32
+
+        private fun word(value: Int) = word(BigInteger.valueOf(value.toLong()).toByteArray())
+
+        private fun word(bytes: ByteArray): ByteArray {
+            val unsigned = if (bytes.size > 32) bytes.copyOfRange(bytes.size - 32, bytes.size) else bytes
+            return ByteArray(32 - unsigned.size) + unsigned
+        }
+
+        private fun readInt(data: ByteArray, position: Int): Int {
+            return BigInteger(1, data.copyOfRange(position, position + 32)).toInt()
+        }
+    }
+}
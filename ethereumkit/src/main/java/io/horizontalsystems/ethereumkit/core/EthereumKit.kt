@@ -5,6 +5,7 @@ import android.content.Context
 import com.google.gson.GsonBuilder
 import com.google.gson.reflect.TypeToken
 import io.horizontalsystems.ethereumkit.api.core.ApiRpcSyncer
+import io.horizontalsystems.ethereumkit.api.core.ChainHeadTracker
 import io.horizontalsystems.ethereumkit.api.core.IRpcSyncer
 import io.horizontalsystems.ethereumkit.api.core.NodeWebSocket
 import io.horizontalsystems.ethereumkit.api.core.RpcBlockchain
@@ -16,6 +17,7 @@ import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcTransactionReceipt
 import io.horizontalsystems.ethereumkit.api.models.AccountState
 import io.horizontalsystems.ethereumkit.api.models.EthereumKitState
 import io.horizontalsystems.ethereumkit.api.storage.ApiStorage
+import io.horizontalsystems.ethereumkit.contracts.Multicall3
 import io.horizontalsystems.ethereumkit.core.signer.Signer
 import io.horizontalsystems.ethereumkit.core.storage.Eip20Storage
 import io.horizontalsystems.ethereumkit.core.storage.TransactionStorage
@@ -33,6 +35,7 @@ import io.horizontalsystems.ethereumkit.models.GasPrice
 import io.horizontalsystems.ethereumkit.models.RawTransaction
 import io.horizontalsystems.ethereumkit.models.RpcSource
 import io.horizontalsystems.ethereumkit.models.Signature
+import io.horizontalsystems.ethereumkit.models.TransactionCursor
 import io.horizontalsystems.ethereumkit.models.TransactionData
 import io.horizontalsystems.ethereumkit.models.TransactionLog
 import io.horizontalsystems.ethereumkit.models.TransactionSource
@@ -46,6 +49,7 @@ import io.horizontalsystems.ethereumkit.network.IntTypeAdapter
 import io.horizontalsystems.ethereumkit.network.LongTypeAdapter
 import io.horizontalsystems.ethereumkit.network.OptionalTypeAdapter
 import io.horizontalsystems.ethereumkit.transactionsyncers.EthereumTransactionSyncer
+import io.horizontalsystems.ethereumkit.transactionsyncers.HeadBlockScanner
 import io.horizontalsystems.ethereumkit.transactionsyncers.InternalTransactionSyncer
 import io.horizontalsystems.ethereumkit.transactionsyncers.TransactionSyncManager
 import io.horizontalsystems.hdwalletkit.Mnemonic
@@ -74,6 +78,8 @@ class EthereumKit(
     val transactionProvider: ITransactionProvider,
     val eip20Storage: IEip20Storage,
     private val decorationManager: DecorationManager,
+    private val headBlockScanner: HeadBlockScanner,
+    private val pendingTransactionTracker: PendingTransactionTracker,
     private val state: EthereumKitState = EthereumKitState()
 ) : IBlockchainListener {
 
@@ -126,6 +132,18 @@ class EthereumKit(
     val transactionsSyncStateFlowable: Flowable<SyncState>
         get() = transactionSyncManager.syncStateAsync
 
+    val transactionSyncerStatuses: List<TransactionSyncManager.SyncerStatus>
+        get() = transactionSyncManager.syncerStatuses
+
+    val transactionSyncerStatusesFlowable: Flowable<List<TransactionSyncManager.SyncerStatus>>
+        get() = transactionSyncManager.syncerStatusesAsync
+
+    var headBlockScannerEnabled: Boolean
+        get() = headBlockScanner.enabled
+        set(value) {
+            headBlockScanner.enabled = value
+        }
+
     val accountStateFlowable: Flowable<AccountState>
         get() = accountStateSubject.toFlowable(BackpressureStrategy.BUFFER)
 
@@ -138,11 +156,15 @@ class EthereumKit(
         started = true
 
         blockchain.start()
+        headBlockScanner.start()
+        pendingTransactionTracker.start()
         transactionSyncManager.sync()
     }
 
     fun stop() {
         started = false
+        headBlockScanner.stop()
+        pendingTransactionTracker.stop()
         blockchain.stop()
         state.clear()
         connectionManager.stop()
@@ -173,6 +195,11 @@ class EthereumKit(
         return transactionManager.getFullTransactionsAsync(tags, fromHash, limit)
     }
 
+    // Next page after the given transaction, e.g. FullTransaction.transaction.cursor of the last loaded one
+    fun getFullTransactionsBeforeAsync(tags: List<List<String>>, cursor: TransactionCursor?, limit: Int?): Single<List<FullTransaction>> {
+        return transactionManager.getFullTransactionsBeforeAsync(tags, cursor, limit)
+    }
+
     fun getPendingFullTransactions(tags: List<List<String>>): List<FullTransaction> {
         return transactionManager.getPendingFullTransactions(tags)
     }
@@ -189,6 +216,10 @@ class EthereumKit(
         return transactionManager.getFullTransactionsAfterSingle(hash)
     }
 
+    fun getFullTransactionsAfterCursorSingle(cursor: TransactionCursor?): Single<List<FullTransaction>> {
+        return transactionManager.getFullTransactionsAfterCursorSingle(cursor)
+    }
+
     fun estimateGas(to: Address?, value: BigInteger, gasPrice: GasPrice): Single<Long> {
         // without address - provide default gas limit
         if (to == null) {
@@ -263,12 +294,14 @@ class EthereumKit(
         return blockchain.getStorageAt(contractAddress, position, defaultBlockParameter)
     }
 
+    // See RpcBlockchain.call for aggregate
     fun call(
         contractAddress: Address,
         data: ByteArray,
-        defaultBlockParameter: DefaultBlockParameter = DefaultBlockParameter.Latest
+        defaultBlockParameter: DefaultBlockParameter = DefaultBlockParameter.Latest,
+        aggregate: Boolean? = null
     ): Single<ByteArray> {
-        return blockchain.call(contractAddress, data, defaultBlockParameter)
+        return blockchain.call(contractAddress, data, defaultBlockParameter, aggregate)
     }
 
     fun debugInfo(): String {
@@ -302,6 +335,8 @@ class EthereumKit(
 
         state.lastBlockHeight = lastBlockHeight
         lastBlockHeightSubject.onNext(lastBlockHeight)
+        headBlockScanner.onUpdateLastBlockHeight(lastBlockHeight)
+        pendingTransactionTracker.onUpdateLastBlockHeight(lastBlockHeight)
         transactionSyncManager.sync()
     }
 
@@ -404,15 +439,32 @@ class EthereumKit(
             .registerTypeAdapter(object : TypeToken<Optional<RpcBlock>>() {}.type, OptionalTypeAdapter<RpcBlock>(RpcBlock::class.java))
             .create()
 
+        // With the chain given, calls at Latest are batched through the Multicall3 contract of the chain when aggregate
+        // is true, or when it is null and the method is known not to depend on msg.sender. See RpcBlockchain.call.
         fun call(
             rpcSource: RpcSource,
             contractAddress: Address,
             data: ByteArray,
-            defaultBlockParameter: DefaultBlockParameter = DefaultBlockParameter.Latest
+            defaultBlockParameter: DefaultBlockParameter = DefaultBlockParameter.Latest,
+            chain: Chain? = null,
+            aggregate: Boolean? = null
         ): Single<ByteArray> {
             val rpcApiProvider = RpcApiProviderFactory.nodeApiProvider(rpcSource)
             val rpc = RpcBlockchain.callRpc(contractAddress, data, defaultBlockParameter)
-            return rpcApiProvider.single(rpc)
+
+            if (defaultBlockParameter != DefaultBlockParameter.Latest) {
+                return rpcApiProvider.single(rpc)
+            }
+
+            val aggregated = chain != null && (aggregate ?: Multicall3.isSenderIndependent(data))
+
+            return RpcApiProviderFactory.callMemo(rpcSource).call(contractAddress, data, aggregated) {
+                if (chain != null && aggregated) {
+                    RpcApiProviderFactory.multicall(rpcSource, chain).call(contractAddress, data)
+                } else {
+                    rpcApiProvider.single(rpc)
+                }
+            }
         }
 
         fun estimateGas(
@@ -449,12 +501,15 @@ class EthereumKit(
             chain: Chain,
             rpcSource: RpcSource,
             transactionSource: TransactionSource,
-            walletId: String
+            walletId: String,
+            rpcLogsOptions: RpcLogTransactionProvider.Options? = null,
+            headBlockScannerOptions: HeadBlockScanner.Options = HeadBlockScanner.Options(),
+            traceOptions: TraceTransactionProvider.Options? = null
         ): EthereumKit {
             val seed = Mnemonic().toSeed(words, passphrase)
             val privateKey = Signer.privateKey(seed, chain)
             val address = ethereumAddress(privateKey)
-            return getInstance(application, address, chain, rpcSource, transactionSource, walletId)
+            return getInstance(application, address, chain, rpcSource, transactionSource, walletId, rpcLogsOptions, headBlockScannerOptions, traceOptions)
         }
 
         fun getInstance(
@@ -463,44 +518,61 @@ class EthereumKit(
             chain: Chain,
             rpcSource: RpcSource,
             transactionSource: TransactionSource,
-            walletId: String
+            walletId: String,
+            rpcLogsOptions: RpcLogTransactionProvider.Options? = null,
+            headBlockScannerOptions: HeadBlockScanner.Options = HeadBlockScanner.Options(),
+            traceOptions: TraceTransactionProvider.Options? = null
         ): EthereumKit {
 
             val connectionManager = ConnectionManager(application)
 
-            val syncer: IRpcSyncer = when (rpcSource) {
-                is RpcSource.WebSocket -> {
-                    val rpcWebSocket = NodeWebSocket(rpcSource.uri, gson, rpcSource.auth)
-                    val webSocketRpcSyncer = WebSocketRpcSyncer(rpcWebSocket, gson)
+            val syncer: IRpcSyncer = ChainHeadTracker.syncer(rpcSource) {
+                when (rpcSource) {
+                    is RpcSource.WebSocket -> {
+                        val rpcWebSocket = NodeWebSocket(rpcSource.uri, gson, rpcSource.auth)
+                        val webSocketRpcSyncer = WebSocketRpcSyncer(rpcWebSocket, gson)
 
-                    rpcWebSocket.listener = webSocketRpcSyncer
+                        rpcWebSocket.listener = webSocketRpcSyncer
 
-                    webSocketRpcSyncer
-                }
+                        ChainHeadTracker.Feed(webSocketRpcSyncer)
+                    }
+
+                    is RpcSource.Http -> {
+                        val apiProvider = RpcApiProviderFactory.nodeApiProvider(rpcSource)
+                        val syncerConnectionManager = ConnectionManager(application)
 
-                is RpcSource.Http -> {
-                    val apiProvider = RpcApiProviderFactory.nodeApiProvider(rpcSource)
-                    ApiRpcSyncer(apiProvider, connectionManager, chain.syncInterval)
+                        ChainHeadTracker.Feed(
+                            ApiRpcSyncer(apiProvider, syncerConnectionManager, chain.syncInterval),
+                            syncerConnectionManager::stop
+                        )
+                    }
                 }
             }
 
             val transactionBuilder = TransactionBuilder(address, chain.id)
-            val transactionProvider = transactionProvider(transactionSource, address, chain.id)
+            val explorerTransactionProvider = transactionProvider(transactionSource, address, chain.id)
 
             val apiDatabase = EthereumDatabaseManager.getEthereumApiDatabase(application, walletId, chain)
             val storage = ApiStorage(apiDatabase)
 
-            val blockchain = RpcBlockchain.instance(address, storage, syncer, transactionBuilder)
+            val blockchain = RpcBlockchain.instance(address, storage, syncer, transactionBuilder, chain)
 
             val transactionDatabase = EthereumDatabaseManager.getTransactionDatabase(application, walletId, chain)
             val transactionStorage = TransactionStorage(transactionDatabase)
             val transactionSyncerStateStorage = TransactionSyncerStateStorage(transactionDatabase)
 
+            val logsTransactionProvider = rpcLogsOptions?.let {
+                RpcLogTransactionProvider(blockchain, address, explorerTransactionProvider, transactionSyncerStateStorage, chain.confirmationDepth, it)
+            } ?: explorerTransactionProvider
+            val transactionProvider = traceOptions?.let {
+                TraceTransactionProvider(blockchain, address, logsTransactionProvider, transactionSyncerStateStorage, chain.confirmationDepth, it)
+            } ?: logsTransactionProvider
+
             val erc20Database = EthereumDatabaseManager.getErc20Database(application, walletId, chain)
             val erc20Storage = Eip20Storage(erc20Database)
 
-            val ethereumTransactionSyncer = EthereumTransactionSyncer(transactionProvider, transactionSyncerStateStorage)
-            val internalTransactionsSyncer = InternalTransactionSyncer(transactionProvider, transactionStorage)
+            val ethereumTransactionSyncer = EthereumTransactionSyncer(transactionProvider, transactionSyncerStateStorage, transactionStorage, address, chain.confirmationDepth)
+            val internalTransactionsSyncer = InternalTransactionSyncer(transactionProvider, transactionStorage, chain.confirmationDepth)
 
             val decorationManager = DecorationManager(address, transactionStorage)
             val transactionManager = TransactionManager(address, transactionStorage, decorationManager, blockchain, transactionProvider)
@@ -509,6 +581,9 @@ class EthereumKit(
             transactionSyncManager.add(internalTransactionsSyncer)
             transactionSyncManager.add(ethereumTransactionSyncer)
 
+            val headBlockScanner = HeadBlockScanner(address, blockchain, transactionManager, transactionStorage, connectionManager, chain.confirmationDepth, headBlockScannerOptions)
+            val pendingTransactionTracker = PendingTransactionTracker(blockchain, transactionManager)
+
             val nonceProvider = NonceProvider()
             nonceProvider.addProvider(blockchain)
 
@@ -523,7 +598,9 @@ class EthereumKit(
                 walletId,
                 transactionProvider,
                 erc20Storage,
-                decorationManager
+                decorationManager,
+                headBlockScanner,
+                pendingTransactionTracker
             )
 
             blockchain.listener = ethereumKit
@@ -1,7 +1,9 @@
 package io.horizontalsystems.ethereumkit.core
 
+import io.horizontalsystems.ethereumkit.api.models.EtherscanResponse
 import io.horizontalsystems.ethereumkit.models.*
 import io.horizontalsystems.ethereumkit.network.EtherscanService
+import io.reactivex.Flowable
 import io.reactivex.Single
 
 class EtherscanTransactionProvider(
@@ -11,215 +13,115 @@ class EtherscanTransactionProvider(
 
     override fun getTransactions(startBlock: Long): Single<List<ProviderTransaction>> {
         return etherscanService.getTransactionList(address, startBlock)
-            .map { response ->
-                response.result.distinctBy { it["hash"] }.mapNotNull { tx ->
-                    try {
-                        val blockNumber = tx.getValue("blockNumber").toLong()
-                        val timestamp = tx.getValue("timeStamp").toLong()
-                        val hash = tx.getValue("hash").hexStringToByteArray()
-                        val nonce = tx.getValue("nonce").toLong()
-                        val blockHash = tx["blockHash"]?.hexStringToByteArray()
-                        val transactionIndex = tx.getValue("transactionIndex").toInt()
-                        val from = Address(tx.getValue("from"))
-                        val to = getAddressOrNull(tx["to"])
-                        val value = tx.getValue("value").toBigInteger()
-                        val gasLimit = tx.getValue("gas").toLong()
-                        val gasPrice = tx.getValue("gasPrice").toLong()
-                        val isError = tx["isError"]?.toIntOrNull()
-                        val txReceiptStatus = tx["txreceipt_status"]?.toIntOrNull()
-                        val input = tx.getValue("input").hexStringToByteArray()
-                        val cumulativeGasUsed = tx["cumulativeGasUsed"]?.toLongOrNull()
-                        val gasUsed = tx["gasUsed"]?.toLongOrNull()
-
-                        ProviderTransaction(
-                            blockNumber, timestamp, hash, nonce, blockHash, transactionIndex, from, to, value, gasLimit, gasPrice,
-                            isError, txReceiptStatus, input, cumulativeGasUsed, gasUsed
-                        )
-
-                    } catch (throwable: Throwable) {
-                        null
-                    }
-                }
-            }
+            .map { response -> response.result.distinctBy { it.hash.toRawHexString() } }
     }
 
     override fun getInternalTransactions(startBlock: Long): Single<List<ProviderInternalTransaction>> {
         return etherscanService.getInternalTransactionList(address, startBlock)
-            .map { response ->
-                response.result.mapNotNull { internalTx ->
-                    try {
-                        val hash = internalTx.getValue("hash").hexStringToByteArray()
-                        val blockNumber = internalTx.getValue("blockNumber").toLong()
-                        val timestamp = internalTx.getValue("timeStamp").toLong()
-                        val from = Address(internalTx.getValue("from"))
-                        val to = Address(internalTx.getValue("to"))
-                        val value = internalTx.getValue("value").toBigInteger()
-                        val traceId = internalTx.getValue("traceId")
-
-                        ProviderInternalTransaction(hash, blockNumber, timestamp, from, to, value, traceId)
-                    } catch (throwable: Throwable) {
-                        null
-                    }
-                }
-            }
+            .map { response -> response.result }
     }
 
     override fun getInternalTransactionsAsync(hash: ByteArray): Single<List<ProviderInternalTransaction>> {
         return etherscanService.getInternalTransactionsAsync(hash)
-            .map { response ->
-                response.result.mapNotNull { internalTx ->
-                    try {
-                        val blockNumber = internalTx.getValue("blockNumber").toLong()
-                        val timestamp = internalTx.getValue("timeStamp").toLong()
-                        val from = Address(internalTx.getValue("from"))
-                        val to = Address(internalTx.getValue("to"))
-                        val value = internalTx.getValue("value").toBigInteger()
-                        val traceId = internalTx.getValue("traceId")
-
-                        ProviderInternalTransaction(hash, blockNumber, timestamp, from, to, value, traceId)
-                    } catch (throwable: Throwable) {
-                        null
-                    }
-                }
-            }
+            .map { response -> response.result }
     }
 
     override fun getTokenTransactions(startBlock: Long): Single<List<ProviderTokenTransaction>> {
         return etherscanService.getTokenTransactions(address, startBlock)
-            .map { response ->
-                response.result.mapNotNull { tx ->
-                    try {
-                        val blockNumber = tx.getValue("blockNumber").toLong()
-                        val timestamp = tx.getValue("timeStamp").toLong()
-                        val hash = tx.getValue("hash").hexStringToByteArray()
-                        val nonce = tx.getValue("nonce").toLong()
-                        val blockHash = tx.getValue("blockHash").hexStringToByteArray()
-                        val from = Address(tx.getValue("from"))
-                        val contractAddress = Address(tx.getValue("contractAddress"))
-                        val to = Address(tx.getValue("to"))
-                        val value = tx.getValue("value").toBigInteger()
-                        val tokenName = tx.getValue("tokenName")
-                        val tokenSymbol = tx.getValue("tokenSymbol")
-                        val tokenDecimal = tx.getValue("tokenDecimal").toInt()
-                        val transactionIndex = tx.getValue("transactionIndex").toInt()
-                        val gasLimit = tx.getValue("gas").toLong()
-                        val gasPrice = tx.getValue("gasPrice").toLong()
-                        val gasUsed = tx.getValue("gasUsed").toLong()
-                        val cumulativeGasUsed = tx.getValue("cumulativeGasUsed").toLong()
-
-                        ProviderTokenTransaction(
-                            blockNumber, timestamp, hash, nonce, blockHash, from, contractAddress, to, value, tokenName, tokenSymbol, tokenDecimal,
-                            transactionIndex, gasLimit, gasPrice, gasUsed, cumulativeGasUsed
-                        )
-
-                    } catch (throwable: Throwable) {
-                        null
-                    }
-                }
-            }
+            .map { response -> response.result }
     }
 
     override fun getEip721Transactions(startBlock: Long): Single<List<ProviderEip721Transaction>> {
         return etherscanService.getEip721Transactions(address, startBlock)
-            .map { response ->
-                response.result.mapNotNull { tx ->
-                    try {
-                        val blockNumber = tx.getValue("blockNumber").toLong()
-                        val timestamp = tx.getValue("timeStamp").toLong()
-                        val hash = tx.getValue("hash").hexStringToByteArray()
-                        val nonce = tx.getValue("nonce").toLong()
-                        val blockHash = tx.getValue("blockHash").hexStringToByteArray()
-                        val from = Address(tx.getValue("from"))
-                        val contractAddress = Address(tx.getValue("contractAddress"))
-                        val to = Address(tx.getValue("to"))
-                        val tokenId = tx.getValue("tokenID").toBigInteger()
-                        val tokenName = tx.getValue("tokenName")
-                        val tokenSymbol = tx.getValue("tokenSymbol")
-                        val tokenDecimal = tx.getValue("tokenDecimal").toInt()
-                        val transactionIndex = tx.getValue("transactionIndex").toInt()
-                        val gasLimit = tx.getValue("gas").toLong()
-                        val gasPrice = tx.getValue("gasPrice").toLong()
-                        val gasUsed = tx.getValue("gasUsed").toLong()
-                        val cumulativeGasUsed = tx.getValue("cumulativeGasUsed").toLong()
-
-                        ProviderEip721Transaction(
-                            blockNumber = blockNumber,
-                            timestamp = timestamp,
-                            hash = hash,
-                            nonce = nonce,
-                            blockHash = blockHash,
-                            transactionIndex = transactionIndex,
-                            gasLimit = gasLimit,
-                            gasPrice = gasPrice,
-                            gasUsed = gasUsed,
-                            cumulativeGasUsed = cumulativeGasUsed,
-                            contractAddress = contractAddress,
-                            from = from,
-                            to = to,
-                            tokenId = tokenId,
-                            tokenName = tokenName,
-                            tokenSymbol = tokenSymbol,
-                            tokenDecimal = tokenDecimal
-                        )
-                    } catch (throwable: Throwable) {
-                        null
-                    }
-                }
-            }
+            .map { response -> response.result }
     }
 
     override fun getEip1155Transactions(startBlock: Long): Single<List<ProviderEip1155Transaction>> {
         return etherscanService.getEip1155Transactions(address, startBlock)
-            .map { response ->
-                response.result.mapNotNull { tx ->
-                    try {
-                        val blockNumber = tx.getValue("blockNumber").toLong()
-                        val timestamp = tx.getValue("timeStamp").toLong()
-                        val hash = tx.getValue("hash").hexStringToByteArray()
-                        val nonce = tx.getValue("nonce").toLong()
-                        val blockHash = tx.getValue("blockHash").hexStringToByteArray()
-                        val from = Address(tx.getValue("from"))
-                        val contractAddress = Address(tx.getValue("contractAddress"))
-                        val to = Address(tx.getValue("to"))
-
-                        val tokenId = tx.getValue("tokenID").toBigInteger()
-                        val tokenValue = tx.getValue("tokenValue").toInt()
-                        val tokenName = tx.getValue("tokenName")
-                        val tokenSymbol = tx.getValue("tokenSymbol")
-                        val transactionIndex = tx.getValue("transactionIndex").toInt()
-                        val gasLimit = tx.getValue("gas").toLong()
-                        val gasPrice = tx.getValue("gasPrice").toLong()
-                        val gasUsed = tx.getValue("gasUsed").toLong()
-                        val cumulativeGasUsed = tx.getValue("cumulativeGasUsed").toLong()
-
-                        ProviderEip1155Transaction(
-                            blockNumber = blockNumber,
-                            timestamp = timestamp,
-                            hash = hash,
-                            nonce = nonce,
-                            blockHash = blockHash,
-                            transactionIndex = transactionIndex,
-                            gasLimit = gasLimit,
-                            gasPrice = gasPrice,
-                            gasUsed = gasUsed,
-                            cumulativeGasUsed = cumulativeGasUsed,
-                            contractAddress = contractAddress,
-                            from = from,
-                            to = to,
-                            tokenId = tokenId,
-                            tokenValue = tokenValue,
-                            tokenName = tokenName,
-                            tokenSymbol = tokenSymbol
-                        )
-                    } catch (throwable: Throwable) {
-                        null
+            .map { response -> response.result }
+    }
+
+    override fun getTransactionsPages(startBlock: Long): Flowable<List<ProviderTransaction>> {
+        return pages(startBlock, { it.blockNumber }) { from, endBlock, page ->
+            etherscanService.getTransactionListPage(address, from, endBlock, page, pageSize)
+        }.map { transactions -> transactions.distinctBy { it.hash.toRawHexString() } }
+    }
+
+    override fun getInternalTransactionsPages(startBlock: Long): Flowable<List<ProviderInternalTransaction>> {
+        return pages(startBlock, { it.blockNumber }) { from, endBlock, page ->
+            etherscanService.getInternalTransactionListPage(address, from, endBlock, page, pageSize)
+        }
+    }
+
+    override fun getTokenTransactionsPages(startBlock: Long): Flowable<List<ProviderTokenTransaction>> {
+        return pages(startBlock, { it.blockNumber }) { from, endBlock, page ->
+            etherscanService.getTokenTransactionsPage(address, from, endBlock, page, pageSize)
+        }
+    }
+
+    override fun getEip721TransactionsPages(startBlock: Long): Flowable<List<ProviderEip721Transaction>> {
+        return pages(startBlock, { it.blockNumber }) { from, endBlock, page ->
+            etherscanService.getEip721TransactionsPage(address, from, endBlock, page, pageSize)
+        }
+    }
+
+    override fun getEip1155TransactionsPages(startBlock: Long): Flowable<List<ProviderEip1155Transaction>> {
+        return pages(startBlock, { it.blockNumber }) { from, endBlock, page ->
+            etherscanService.getEip1155TransactionsPage(address, from, endBlock, page, pageSize)
+        }
+    }
+
+    companion object {
+        private const val pageSize = 1000
+        private const val maxPages = 10_000 / pageSize
+
+        // Pages are requested in ascending block order. Only blocks that are fully received are emitted, so the
+        // block number of the last emitted row can be used as a resume cursor. When a single block does not fit
+        // into one page, its pages are collected with endblock fixed to that block and emitted together.
+        // Etherscan serves only the first 10000 rows of a query, so a block is emitted after maxPages pages
+        // without the rows beyond them.
+        // Paging follows the block numbers of all received rows, so rows that could not be decoded do not end it early.
+        internal fun <T> pages(
+            startBlock: Long,
+            blockNumber: (T) -> Long,
+            fetch: (from: Long, endBlock: Long?, page: Int) -> Single<EtherscanResponse<T>>
+        ): Flowable<List<T>> {
+            fun nextPages(from: Long, endBlock: Long?, page: Int, collected: List<T>): Flowable<List<T>> {
+                return fetch(from, endBlock, page).flatMapPublisher { response ->
+                    val rows = response.result
+                    val isFull = response.rowCount >= pageSize
+                    val firstBlock = response.firstRowBlock
+                    val lastBlock = response.lastRowBlock
+
+                    when {
+                        endBlock != null && isFull && page < maxPages -> {
+                            nextPages(from, endBlock, page + 1, collected + rows)
+                        }
+                        endBlock != null -> {
+                            Flowable.just(collected + rows)
+                                .concatWith(Flowable.defer { nextPages(endBlock + 1, null, 1, listOf()) })
+                        }
+                        !isFull -> {
+                            if (rows.isEmpty()) Flowable.empty() else Flowable.just(rows)
+                        }
+                        firstBlock == null || lastBlock == null -> {
+                            Flowable.error(EtherscanService.RequestError.ResponseError("Full page without block numbers from block $from"))
+                        }
+                        firstBlock == lastBlock -> {
+                            nextPages(lastBlock, lastBlock, page + 1, rows)
+                        }
+                        else -> {
+                            val completeRows = rows.filter { blockNumber(it) < lastBlock }
+                            val next = Flowable.defer { nextPages(lastBlock, null, 1, listOf()) }
+
+                            if (completeRows.isEmpty()) next else Flowable.just(completeRows).concatWith(next)
+                        }
                     }
                 }
             }
 
+            return Flowable.defer { nextPages(startBlock, null, 1, listOf()) }
+        }
     }
 
-    private fun getAddressOrNull(addressString: String?): Address? =
-        if (!addressString.isNullOrEmpty()) Address(addressString) else null
-
 }
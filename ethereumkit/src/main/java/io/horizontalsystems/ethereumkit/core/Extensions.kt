@@ -13,10 +13,17 @@ fun String.removeLeadingZeros(): String {
     return this.trimStart('0')
 }
 
+private val hexDigits = "0123456789abcdef".toCharArray()
+
 fun ByteArray?.toRawHexString(): String {
-    return this?.joinToString(separator = "") {
-        it.toInt().and(0xff).toString(16).padStart(2, '0')
-    } ?: ""
+    val bytes = this ?: return ""
+    val chars = CharArray(bytes.size * 2)
+    bytes.forEachIndexed { i, byte ->
+        val value = byte.toInt() and 0xff
+        chars[i * 2] = hexDigits[value ushr 4]
+        chars[i * 2 + 1] = hexDigits[value and 0x0f]
+    }
+    return String(chars)
 }
 
 fun ByteArray?.toHexString(): String {
@@ -39,13 +46,25 @@ fun String.hexStringToByteArrayOrNull(): ByteArray? {
 }
 
 private fun String.getByteArray(): ByteArray {
-    var hexWithoutPrefix = this.stripHexPrefix()
-    if (hexWithoutPrefix.length % 2 == 1) {
-        hexWithoutPrefix = "0$hexWithoutPrefix"
+    val start = if (startsWith("0x", true)) 2 else 0
+    val length = this.length - start
+    val bytes = ByteArray((length + 1) / 2)
+
+    // an odd-length hex is treated as if it had a leading "0"
+    var charIndex = start - length % 2
+    for (i in bytes.indices) {
+        val high = if (charIndex < start) 0 else hexDigit(this[charIndex])
+        val low = hexDigit(this[charIndex + 1])
+        bytes[i] = ((high shl 4) or low).toByte()
+        charIndex += 2
     }
-    return hexWithoutPrefix.chunked(2)
-            .map { it.toInt(16).toByte() }
-            .toByteArray()
+    return bytes
+}
+
+private fun String.hexDigit(char: Char): Int {
+    val digit = Character.digit(char, 16)
+    if (digit < 0) throw NumberFormatException("For input string: \"$this\"")
+    return digit
 }
 
 fun String.stripHexPrefix(): String {
@@ -19,12 +19,14 @@ import io.horizontalsystems.ethereumkit.models.ProviderInternalTransaction
 import io.horizontalsystems.ethereumkit.models.ProviderTokenTransaction
 import io.horizontalsystems.ethereumkit.models.ProviderTransaction
 import io.horizontalsystems.ethereumkit.models.RawTransaction
+import io.horizontalsystems.ethereumkit.models.ScannedTransaction
 import io.horizontalsystems.ethereumkit.models.Signature
 import io.horizontalsystems.ethereumkit.models.Transaction
+import io.horizontalsystems.ethereumkit.models.TransactionCursor
 import io.horizontalsystems.ethereumkit.models.TransactionLog
-import io.horizontalsystems.ethereumkit.models.TransactionTag
 import io.horizontalsystems.ethereumkit.spv.models.AccountStateSpv
 import io.horizontalsystems.ethereumkit.spv.models.BlockHeader
+import io.reactivex.Flowable
 import io.reactivex.Single
 import java.math.BigInteger
 
@@ -70,7 +72,7 @@ interface IBlockchain {
 
     fun getLogs(address: Address?, topics: List<ByteArray?>, fromBlock: Long, toBlock: Long, pullTimestamps: Boolean): Single<List<TransactionLog>>
     fun getStorageAt(contractAddress: Address, position: ByteArray, defaultBlockParameter: DefaultBlockParameter): Single<ByteArray>
-    fun call(contractAddress: Address, data: ByteArray, defaultBlockParameter: DefaultBlockParameter): Single<ByteArray>
+    fun call(contractAddress: Address, data: ByteArray, defaultBlockParameter: DefaultBlockParameter, aggregate: Boolean? = null): Single<ByteArray>
 
     fun <T: Any> rpcSingle(rpc: JsonRpc<T>): Single<T>
 }
@@ -85,32 +87,49 @@ interface ITransactionStorage {
     fun getTransactions(hashes: List<ByteArray>): List<Transaction>
     fun getTransaction(hash: ByteArray): Transaction?
     fun getTransactionsBeforeAsync(tags: List<List<String>>, hash: ByteArray?, limit: Int?): Single<List<Transaction>>
+    fun getTransactionsBeforeCursorAsync(tags: List<List<String>>, cursor: TransactionCursor?, limit: Int?): Single<List<Transaction>>
     fun save(transactions: List<Transaction>)
+    fun merge(transactions: List<Transaction>)
 
     fun getPendingTransactions(): List<Transaction>
     fun getPendingTransactions(tags: List<List<String>>): List<Transaction>
     fun getNonPendingTransactionsByNonces(from: Address, pendingTransactionNonces: List<Long>): List<Transaction>
+    fun getTransactionsInBlockRange(address: Address, fromBlock: Long, toBlock: Long?): List<Transaction>
+    fun setPending(hashes: List<ByteArray>)
+    fun deleteTransactions(hashes: List<ByteArray>)
+
+    fun saveScannedTransactions(scannedTransactions: List<ScannedTransaction>)
+    fun getScannedTransactions(toBlock: Long): List<ScannedTransaction>
+    fun deleteScannedTransactions(hashes: List<ByteArray>)
 
     fun getLastInternalTransaction(): InternalTransaction?
     fun getInternalTransactions(): List<InternalTransaction>
     fun getInternalTransactionsByHashes(hashes: List<ByteArray>): List<InternalTransaction>
     fun saveInternalTransactions(internalTransactions: List<InternalTransaction>)
+    fun replaceInternalTransactions(fromBlock: Long, toBlock: Long?, internalTransactions: List<InternalTransaction>)
 
-    fun saveTags(tags: List<TransactionTag>)
+    fun saveTags(tags: List<Pair<String, ByteArray>>)
     fun getDistinctTokenContractAddresses(): List<String>
 
     fun getTransactionsAfterSingle(hash: ByteArray?): Single<List<Transaction>>
+    fun getTransactionsAfterCursorSingle(cursor: TransactionCursor?): Single<List<Transaction>>
 }
 
 interface IEip20Storage {
     fun getLastEvent(): Eip20Event?
     fun save(events: List<Eip20Event>)
+    fun replace(fromBlock: Long, toBlock: Long?, events: List<Eip20Event>)
     fun getEvents(): List<Eip20Event>
     fun getEventsByHashes(hashes: List<ByteArray>): List<Eip20Event>
+    fun getEventsWithTokenInfo(contractAddresses: List<Address>): List<Eip20Event>
 }
 
 interface ITransactionSyncer {
+    val id: String
+        get() = javaClass.simpleName
+
     fun getTransactionsSingle(): Single<Pair<List<Transaction>, Boolean>>
+    fun getTransactionsFlowable(): Flowable<Pair<List<Transaction>, Boolean>> = getTransactionsSingle().toFlowable()
 }
 
 interface IMethodDecorator {
@@ -144,6 +163,12 @@ interface ITransactionProvider {
     fun getTokenTransactions(startBlock: Long): Single<List<ProviderTokenTransaction>>
     fun getEip721Transactions(startBlock: Long): Single<List<ProviderEip721Transaction>>
     fun getEip1155Transactions(startBlock: Long): Single<List<ProviderEip1155Transaction>>
+
+    fun getTransactionsPages(startBlock: Long): Flowable<List<ProviderTransaction>> = getTransactions(startBlock).toFlowable()
+    fun getInternalTransactionsPages(startBlock: Long): Flowable<List<ProviderInternalTransaction>> = getInternalTransactions(startBlock).toFlowable()
+    fun getTokenTransactionsPages(startBlock: Long): Flowable<List<ProviderTokenTransaction>> = getTokenTransactions(startBlock).toFlowable()
+    fun getEip721TransactionsPages(startBlock: Long): Flowable<List<ProviderEip721Transaction>> = getEip721Transactions(startBlock).toFlowable()
+    fun getEip1155TransactionsPages(startBlock: Long): Flowable<List<ProviderEip1155Transaction>> = getEip1155Transactions(startBlock).toFlowable()
 }
 
 interface INonceProvider {
@@ -0,0 +1,55 @@
+package io.horizontalsystems.ethereumkit.core
+
+import io.horizontalsystems.ethereumkit.models.Transaction
+
+// Pending transactions grouped by nonce. It is filled from the storage once and then kept up to date with the
+// stored state of every handled transaction, so replacements are found without scanning all pending transactions.
+class PendingTransactionIndex(pendingTransactions: List<Transaction>) {
+
+    private val transactions = mutableMapOf<String, Transaction>()
+    private val hashesByNonce = mutableMapOf<Long, MutableSet<String>>()
+
+    init {
+        pendingTransactions.forEach { add(it) }
+    }
+
+    val isEmpty: Boolean
+        get() = transactions.isEmpty()
+
+    val pendingTransactions: List<Transaction>
+        get() = transactions.values.toList()
+
+    // Returns true when the transaction became pending
+    fun update(transaction: Transaction): Boolean {
+        val wasPending = transactions.containsKey(transaction.hashString)
+        remove(transaction.hashString)
+
+        return if (transaction.blockNumber == null && !transaction.isFailed && transaction.nonce != null) {
+            add(transaction)
+            !wasPending
+        } else {
+            false
+        }
+    }
+
+    fun pendingTransactions(nonce: Long): List<Transaction> =
+        hashesByNonce[nonce].orEmpty().mapNotNull { transactions[it] }
+
+    fun remove(hashString: String) {
+        val transaction = transactions.remove(hashString) ?: return
+        val nonce = transaction.nonce ?: return
+
+        hashesByNonce[nonce]?.let { hashes ->
+            hashes.remove(hashString)
+            if (hashes.isEmpty()) hashesByNonce.remove(nonce)
+        }
+    }
+
+    private fun add(transaction: Transaction) {
+        val nonce = transaction.nonce ?: return
+
+        transactions[transaction.hashString] = transaction
+        hashesByNonce.getOrPut(nonce) { mutableSetOf() }.add(transaction.hashString)
+    }
+
+}
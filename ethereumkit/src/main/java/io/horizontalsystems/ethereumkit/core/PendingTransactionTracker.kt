@@ -0,0 +1,89 @@
+package io.horizontalsystems.ethereumkit.core
+
+import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
+import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcTransactionReceipt
+import io.horizontalsystems.ethereumkit.models.Transaction
+import io.reactivex.BackpressureStrategy
+import io.reactivex.Completable
+import io.reactivex.Maybe
+import io.reactivex.Single
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.subjects.PublishSubject
+
+// Checks receipts of all pending transactions on every new head, so they are completed as soon as the node has them
+// instead of when the transaction provider indexes them. The receipt requests are sent together, so they go out
+// as one batch when the RPC source batches requests.
+// A missing receipt keeps the transaction pending. Replaced transactions are failed by TransactionManager once the
+// mined transaction with the same nonce is stored, since a lagging node may report neither receipt nor the new nonce.
+class PendingTransactionTracker(
+    private val blockchain: IBlockchain,
+    private val transactionManager: TransactionManager
+) {
+
+    private val heads = PublishSubject.create<Long>()
+    private var disposable: Disposable? = null
+
+    fun start() {
+        if (disposable != null) return
+
+        disposable = heads.toFlowable(BackpressureStrategy.LATEST)
+            .observeOn(Schedulers.io(), false, 1)
+            .concatMapCompletable({ check() }, 1)
+            .subscribe()
+    }
+
+    fun stop() {
+        disposable?.dispose()
+        disposable = null
+    }
+
+    fun onUpdateLastBlockHeight(lastBlockHeight: Long) {
+        heads.onNext(lastBlockHeight)
+    }
+
+    private fun check(): Completable {
+        return Single.fromCallable { transactionManager.getPendingTransactions() }
+            .flatMapCompletable { pendingTransactions ->
+                if (pendingTransactions.isEmpty()) return@flatMapCompletable Completable.complete()
+
+                Maybe.merge(pendingTransactions.map { receipt(it.hash) }).toList()
+                    .flatMap { rpcReceipts -> minedTransactions(pendingTransactions, rpcReceipts) }
+                    .doOnSuccess { minedTransactions -> transactionManager.handle(minedTransactions) }
+                    .ignoreElement()
+            }
+            .onErrorComplete()
+    }
+
+    private fun receipt(hash: ByteArray): Maybe<RpcTransactionReceipt> {
+        return blockchain.getTransactionReceipt(hash)
+            .toMaybe()
+            .onErrorResumeNext { error: Throwable ->
+                if (error is JsonRpc.ResponseError.InvalidResult) Maybe.empty() else Maybe.error(error)
+            }
+    }
+
+    private fun minedTransactions(pendingTransactions: List<Transaction>, receipts: List<RpcTransactionReceipt>): Single<List<Transaction>> {
+        if (receipts.isEmpty()) return Single.just(listOf())
+
+        val transactionsByHash = pendingTransactions.associateBy { it.hash.toRawHexString() }
+        val blocks = receipts.map { it.blockNumber }.distinct().map { blockchain.getBlock(it) }
+
+        return Single.merge(blocks).toList().map { rpcBlocks ->
+            val timestamps = rpcBlocks.associate { it.number to it.timestamp }
+
+            receipts.mapNotNull { receipt ->
+                val transaction = transactionsByHash[receipt.transactionHash.toRawHexString()] ?: return@mapNotNull null
+
+                transaction.copy(
+                    timestamp = timestamps[receipt.blockNumber] ?: transaction.timestamp,
+                    isFailed = receipt.status == 0L,
+                    blockNumber = receipt.blockNumber,
+                    transactionIndex = receipt.transactionIndex.toInt(),
+                    gasUsed = receipt.gasUsed
+                )
+            }
+        }
+    }
+
+}
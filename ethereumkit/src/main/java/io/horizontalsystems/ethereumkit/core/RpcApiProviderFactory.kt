@@ -1,19 +1,28 @@
 package io.horizontalsystems.ethereumkit.core
 
+import io.horizontalsystems.ethereumkit.api.core.BatchOptions
+import io.horizontalsystems.ethereumkit.api.core.ChainHeadTracker
 import io.horizontalsystems.ethereumkit.api.core.IRpcApiProvider
+import io.horizontalsystems.ethereumkit.api.core.LatestCallMemo
 import io.horizontalsystems.ethereumkit.api.core.NodeApiProvider
+import io.horizontalsystems.ethereumkit.api.core.RpcBlockchain
+import io.horizontalsystems.ethereumkit.contracts.Multicall3
+import io.horizontalsystems.ethereumkit.models.Chain
+import io.horizontalsystems.ethereumkit.models.DefaultBlockParameter
 import io.horizontalsystems.ethereumkit.models.RpcSource
 
 object RpcApiProviderFactory {
 
     private val providersCache = mutableMapOf<RpcSource, IRpcApiProvider>()
+    private val multicallsCache = mutableMapOf<Pair<RpcSource, Chain>, Multicall3>()
+    private val callMemosCache = mutableMapOf<RpcSource, LatestCallMemo>()
 
     @Synchronized
     fun nodeApiProvider(rpcSource: RpcSource) = when (val cachedProvider = providersCache[rpcSource]) {
         null -> {
             val rpcApiProvider: IRpcApiProvider = when (rpcSource) {
                 is RpcSource.Http -> {
-                    NodeApiProvider(rpcSource.uris, EthereumKit.gson, rpcSource.auth)
+                    NodeApiProvider(rpcSource.uris, EthereumKit.gson, rpcSource.auth, BatchOptions())
                 }
 
                 is RpcSource.WebSocket -> throw IllegalStateException("Websocket not supported")
@@ -29,4 +38,21 @@ object RpcApiProviderFactory {
         }
     }
 
+    // Memo of calls at Latest for the source. Block heights come from a chain head tracker of the same source,
+    // so calls are only memoized while a kit syncs with it.
+    fun callMemo(rpcSource: RpcSource): LatestCallMemo {
+        val callMemo = synchronized(this) { callMemosCache.getOrPut(rpcSource) { LatestCallMemo() } }
+        ChainHeadTracker.lastBlockHeight(rpcSource)?.let { callMemo.onUpdateBlockHeight(it) }
+
+        return callMemo
+    }
+
+    @Synchronized
+    fun multicall(rpcSource: RpcSource, chain: Chain): Multicall3 =
+        multicallsCache.getOrPut(Pair(rpcSource, chain)) {
+            Multicall3(Multicall3.address(chain), { contractAddress, data ->
+                nodeApiProvider(rpcSource).single(RpcBlockchain.callRpc(contractAddress, data, DefaultBlockParameter.Latest))
+            })
+        }
+
 }
@@ -0,0 +1,360 @@
+package io.horizontalsystems.ethereumkit.core
+
+import io.horizontalsystems.ethereumkit.api.jsonrpc.BlockNumberJsonRpc
+import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
+import io.horizontalsystems.ethereumkit.contracts.ContractEvent
+import io.horizontalsystems.ethereumkit.core.storage.TransactionSyncerStateStorage
+import io.horizontalsystems.ethereumkit.models.Address
+import io.horizontalsystems.ethereumkit.models.ProviderEip1155Transaction
+import io.horizontalsystems.ethereumkit.models.ProviderEip721Transaction
+import io.horizontalsystems.ethereumkit.models.ProviderTokenTransaction
+import io.horizontalsystems.ethereumkit.models.TransactionLog
+import io.reactivex.Emitter
+import io.reactivex.Flowable
+import io.reactivex.Single
+import io.reactivex.functions.BiFunction
+import java.math.BigInteger
+import retrofit2.HttpException
+import java.util.concurrent.Callable
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.max
+import kotlin.math.min
+
+// Finds token transfers of the address with eth_getLogs instead of the explorer API.
+// Transactions and internal transactions are still taken from the explorer provider.
+// Logs carry no transaction fields and no token metadata, so nonce and gas fields are left empty
+// and token name and symbol are empty strings.
+class RpcLogTransactionProvider(
+    private val blockchain: IBlockchain,
+    private val address: Address,
+    explorerProvider: ITransactionProvider,
+    stateStorage: TransactionSyncerStateStorage,
+    confirmationDepth: Long,
+    private val options: Options = Options()
+) : ITransactionProvider by explorerProvider {
+
+    data class Options(
+        val initialWindow: Long = 2_000,
+        val maxWindow: Long = 100_000,
+        val maxConcurrency: Int = 3,
+        val sparseLogCount: Int = 100,
+        val rateLimitRetries: Int = 5,
+        val rateLimitBackoffMillis: Long = 1_000
+    )
+
+    private enum class LogKind(val id: String) {
+        Eip20("eip20"), Eip721("eip721"), Eip1155("eip1155")
+    }
+
+    private val checkpoints = LogKind.values().associateWith { ScanCheckpoint(stateStorage, "rpc-logs-${it.id}", confirmationDepth) }
+
+    private val addressTopic = ByteArray(12) + address.raw
+    private val windowSize = AtomicLong(options.initialWindow)
+
+    override fun getTokenTransactions(startBlock: Long): Single<List<ProviderTokenTransaction>> =
+        getTokenTransactionsPages(startBlock).toList().map { it.flatten() }
+
+    override fun getEip721Transactions(startBlock: Long): Single<List<ProviderEip721Transaction>> =
+        getEip721TransactionsPages(startBlock).toList().map { it.flatten() }
+
+    override fun getEip1155Transactions(startBlock: Long): Single<List<ProviderEip1155Transaction>> =
+        getEip1155TransactionsPages(startBlock).toList().map { it.flatten() }
+
+    override fun getTokenTransactionsPages(startBlock: Long): Flowable<List<ProviderTokenTransaction>> =
+        pages(LogKind.Eip20, startBlock) { logs -> logs.mapNotNull { tokenTransaction(it) } }
+
+    override fun getEip721TransactionsPages(startBlock: Long): Flowable<List<ProviderEip721Transaction>> =
+        pages(LogKind.Eip721, startBlock) { logs -> logs.mapNotNull { eip721Transaction(it) } }
+
+    override fun getEip1155TransactionsPages(startBlock: Long): Flowable<List<ProviderEip1155Transaction>> =
+        pages(LogKind.Eip1155, startBlock) { logs -> logs.flatMap { eip1155Transactions(it) } }
+
+    private fun <T> pages(kind: LogKind, startBlock: Long, rows: (List<TransactionLog>) -> List<T>): Flowable<List<T>> {
+        return blockchain.rpcSingle(BlockNumberJsonRpc()).flatMapPublisher { headBlock ->
+            Flowable.fromIterable(checkpoints.getValue(kind).ranges(startBlock, headBlock))
+                .concatMap { range -> scan(kind, range.first, range.last, rows) }
+        }
+    }
+
+    // Windows are fetched in parallel and emitted in block order. Each received window is checkpointed after it is
+    // handed over, and only windows with rows are emitted.
+    private fun <T> scan(kind: LogKind, fromBlock: Long, toBlock: Long, rows: (List<TransactionLog>) -> List<T>): Flowable<List<T>> {
+        if (fromBlock > toBlock) return Flowable.empty()
+
+        val ranges = Flowable.generate(Callable { fromBlock }, BiFunction<Long, Emitter<LongRange>, Long> { from, emitter ->
+            if (from > toBlock) {
+                emitter.onComplete()
+                from
+            } else {
+                val to = min(from + windowSize.get() - 1, toBlock)
+                emitter.onNext(from..to)
+                to + 1
+            }
+        })
+
+        return ranges
+            .concatMapEager({ range -> window(kind, range).flattenAsFlowable { it } }, options.maxConcurrency, 1)
+            .map { (range, logs) -> Pair(range, rows(logs)) }
+            .doAfterNext { (range, windowRows) -> checkpoints.getValue(kind).advance(range, windowRows.isNotEmpty()) }
+            .map { (_, windowRows) -> windowRows }
+            .filter { it.isNotEmpty() }
+    }
+
+    // A window rejected for its range or result size is split in halves, and later windows start from the smaller size.
+    // Windows with few logs let the size grow again.
+    private fun window(kind: LogKind, range: LongRange): Single<List<Pair<LongRange, List<TransactionLog>>>> {
+        return logs(kind, range)
+            .map { logs ->
+                if (logs.size < options.sparseLogCount) {
+                    windowSize.updateAndGet { min(it * 2, options.maxWindow) }
+                }
+                listOf(Pair(range, logs))
+            }
+            .onErrorResumeNext { error: Throwable ->
+                if (isRangeError(error) && range.first < range.last) {
+                    val middle = range.first + (range.last - range.first) / 2
+                    windowSize.updateAndGet { min(it, max(middle - range.first + 1, 1)) }
+
+                    window(kind, range.first..middle).flatMap { first ->
+                        window(kind, middle + 1..range.last).map { second -> first + second }
+                    }
+                } else {
+                    Single.error(error)
+                }
+            }
+    }
+
+    private fun logs(kind: LogKind, range: LongRange): Single<List<TransactionLog>> {
+        val requests = topicFilters(kind).map { topics ->
+            blockchain.getLogs(null, topics, range.first, range.last, false)
+        }
+
+        return Single.merge(requests).toList()
+            .map { results -> results.flatten().distinct().sortedWith(compareBy({ it.blockNumber }, { it.logIndex })) }
+            .flatMap { logs -> withTimestamps(logs) }
+            .retryWhen { errors -> rateLimitBackoff(errors) }
+    }
+
+    // Rate limited windows are requested again after an exponentially growing delay, with the same range
+    private fun rateLimitBackoff(errors: Flowable<Throwable>): Flowable<Long> {
+        return errors
+            .zipWith(Flowable.range(1, Int.MAX_VALUE), BiFunction<Throwable, Int, Pair<Throwable, Int>> { error, attempt -> Pair(error, attempt) })
+            .flatMap { (error, attempt) ->
+                if (isRateLimitError(error) && attempt <= options.rateLimitRetries) {
+                    Flowable.timer(options.rateLimitBackoffMillis shl (attempt - 1), TimeUnit.MILLISECONDS)
+                } else {
+                    Flowable.error(error)
+                }
+            }
+    }
+
+    private fun topicFilters(kind: LogKind): List<List<ByteArray?>> =
+        when (kind) {
+            LogKind.Eip20, LogKind.Eip721 -> listOf(
+                listOf(transferSignature, addressTopic),
+                listOf(transferSignature, null, addressTopic)
+            )
+            LogKind.Eip1155 -> listOf(transferSingleSignature, transferBatchSignature).flatMap { signature ->
+                listOf(
+                    listOf(signature, null, addressTopic),
+                    listOf(signature, null, null, addressTopic)
+                )
+            }
+        }
+
+    private fun withTimestamps(logs: List<TransactionLog>): Single<List<TransactionLog>> {
+        if (logs.isEmpty()) return Single.just(logs)
+
+        val blocks = logs.map { it.blockNumber }.distinct().map { blockchain.getBlock(it) }
+
+        return Single.merge(blocks).toList().map { rpcBlocks ->
+            val timestamps = rpcBlocks.associate { it.number to it.timestamp }
+            logs.forEach { it.timestamp = timestamps[it.blockNumber] }
+            logs
+        }
+    }
+
+    companion object {
+        private val rangeErrorMessages = listOf(
+            "query returned more than",
+            "block range",
+            "blocks range",
+            "range is too",
+            "range too large",
+            "range limit",
+            "response size",
+            "too many results",
+            "max results",
+            "requested too many blocks"
+        )
+        private val rateLimitMessages = listOf(
+            "rate limit",
+            "request rate",
+            "too many requests",
+            "request count exceeded",
+            "compute units",
+            "throughput"
+        )
+
+        // Providers share error codes between range and rate limit errors, e.g. -32005 of Infura, so only the messages are matched
+        internal fun isRangeError(error: Throwable): Boolean {
+            val rpcError = (error as? JsonRpc.ResponseError.RpcError)?.error ?: return false
+            val message = rpcError.message.lowercase()
+
+            return !isRateLimitMessage(message) && rangeErrorMessages.any { message.contains(it) }
+        }
+
+        private fun isRateLimitError(error: Throwable): Boolean = when (error) {
+            is HttpException -> error.code() == 429
+            is JsonRpc.ResponseError.RpcError -> isRateLimitMessage(error.error.message.lowercase())
+            else -> false
+        }
+
+        private fun isRateLimitMessage(message: String) = rateLimitMessages.any { message.contains(it) }
+
+        private val transferSignature = ContractEvent(
+            "Transfer",
+            listOf(ContractEvent.Argument.Address, ContractEvent.Argument.Address, ContractEvent.Argument.Uint256)
+        ).signature
+
+        private val transferSingleSignature = ContractEvent(
+            "TransferSingle",
+            listOf(
+                ContractEvent.Argument.Address,
+                ContractEvent.Argument.Address,
+                ContractEvent.Argument.Address,
+                ContractEvent.Argument.Uint256,
+                ContractEvent.Argument.Uint256
+            )
+        ).signature
+
+        private val transferBatchSignature = ContractEvent(
+            "TransferBatch",
+            listOf(
+                ContractEvent.Argument.Address,
+                ContractEvent.Argument.Address,
+                ContractEvent.Argument.Address,
+                ContractEvent.Argument.Uint256Array,
+                ContractEvent.Argument.Uint256Array
+            )
+        ).signature
+
+        private fun tokenTransaction(log: TransactionLog): ProviderTokenTransaction? {
+            if (log.topics.size != 3 || !log.hasSignature(transferSignature)) return null
+
+            return try {
+                ProviderTokenTransaction(
+                    blockNumber = log.blockNumber,
+                    timestamp = log.timestamp ?: 0,
+                    hash = log.transactionHash,
+                    nonce = null,
+                    blockHash = log.blockHash,
+                    from = Address(log.topics[1]),
+                    contractAddress = log.address,
+                    to = Address(log.topics[2]),
+                    value = log.data.word(0),
+                    tokenName = "",
+                    tokenSymbol = "",
+                    tokenDecimal = 0,
+                    transactionIndex = log.transactionIndex,
+                    gasLimit = null,
+                    gasPrice = null,
+                    gasUsed = null,
+                    cumulativeGasUsed = null
+                )
+            } catch (error: Throwable) {
+                null
+            }
+        }
+
+        private fun eip721Transaction(log: TransactionLog): ProviderEip721Transaction? {
+            if (log.topics.size != 4 || !log.hasSignature(transferSignature)) return null
+
+            return try {
+                ProviderEip721Transaction(
+                    blockNumber = log.blockNumber,
+                    timestamp = log.timestamp ?: 0,
+                    hash = log.transactionHash,
+                    nonce = null,
+                    blockHash = log.blockHash,
+                    transactionIndex = log.transactionIndex,
+                    gasLimit = null,
+                    gasPrice = null,
+                    gasUsed = null,
+                    cumulativeGasUsed = null,
+                    contractAddress = log.address,
+                    from = Address(log.topics[1]),
+                    to = Address(log.topics[2]),
+                    tokenId = log.topics[3].hexStringToByteArray().word(0),
+                    tokenName = "",
+                    tokenSymbol = "",
+                    tokenDecimal = 0
+                )
+            } catch (error: Throwable) {
+                null
+            }
+        }
+
+        internal fun eip1155Transactions(log: TransactionLog): List<ProviderEip1155Transaction> {
+            if (log.topics.size != 4) return listOf()
+
+            return try {
+                val tokens = when {
+                    log.hasSignature(transferSingleSignature) -> {
+                        listOf(Pair(log.data.word(0), log.data.word(1)))
+                    }
+                    log.hasSignature(transferBatchSignature) -> {
+                        val ids = log.data.uintArray(log.data.word(0).intValueExact() / 32)
+                        val values = log.data.uintArray(log.data.word(1).intValueExact() / 32)
+                        ids.zip(values)
+                    }
+                    else -> listOf()
+                }
+
+                // Amounts above the Int range of the model are skipped, like the explorer rows that fail to parse
+                tokens.mapNotNull { (tokenId, value) ->
+                    val tokenValue = try {
+                        value.intValueExact()
+                    } catch (error: ArithmeticException) {
+                        return@mapNotNull null
+                    }
+
+                    ProviderEip1155Transaction(
+                        blockNumber = log.blockNumber,
+                        timestamp = log.timestamp ?: 0,
+                        hash = log.transactionHash,
+                        nonce = null,
+                        blockHash = log.blockHash,
+                        transactionIndex = log.transactionIndex,
+                        gasLimit = null,
+                        gasPrice = null,
+                        gasUsed = null,
+                        cumulativeGasUsed = null,
+                        contractAddress = log.address,
+                        from = Address(log.topics[2]),
+                        to = Address(log.topics[3]),
+                        tokenId = tokenId,
+                        tokenValue = tokenValue,
+                        tokenName = "",
+                        tokenSymbol = ""
+                    )
+                }
+            } catch (error: Throwable) {
+                listOf()
+            }
+        }
+
+        private fun TransactionLog.hasSignature(signature: ByteArray) =
+            topics.firstOrNull()?.hexStringToByteArrayOrNull()?.contentEquals(signature) == true
+
+        private fun ByteArray.word(index: Int): BigInteger =
+            BigInteger(1, copyOfRange(index * 32, index * 32 + 32))
+
+        private fun ByteArray.uintArray(wordIndex: Int): List<BigInteger> {
+            val size = word(wordIndex).intValueExact()
+            return (1..size).map { word(wordIndex + it) }
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package io.horizontalsystems.ethereumkit.core
+
+import io.horizontalsystems.ethereumkit.core.storage.TransactionSyncerStateStorage
+import io.horizontalsystems.ethereumkit.models.TransactionSyncerState
+import kotlin.math.max
+import kotlin.math.min
+
+// Remembers how far a provider querying the node range by range has scanned, and up to where it found rows.
+// Blocks above the last range with rows and below the reorg window of the last scanned block are known to have
+// no rows, so they are skipped. Everything from the requested start up to the last range with rows is scanned
+// again, since the caller replaces its stored rows for every range it receives.
+class ScanCheckpoint(
+    private val stateStorage: TransactionSyncerStateStorage,
+    id: String,
+    private val confirmationDepth: Long
+) {
+
+    private val scannedStateId = "$id-scanned"
+    private val rowsStateId = "$id-rows"
+
+    fun ranges(startBlock: Long, headBlock: Long): List<LongRange> {
+        val lastRowsBlock = stateStorage.get(rowsStateId)?.lastBlockNumber ?: 0
+        val lastScannedBlock = stateStorage.get(scannedStateId)?.lastBlockNumber ?: 0
+        val unscannedBlock = max(lastRowsBlock + 1, lastScannedBlock - confirmationDepth + 1)
+
+        return listOf(
+            startBlock..min(lastRowsBlock, headBlock),
+            max(startBlock, unscannedBlock)..headBlock
+        ).filter { !it.isEmpty() }
+    }
+
+    fun advance(range: LongRange, hasRows: Boolean) {
+        if (hasRows) {
+            advance(rowsStateId, range.last)
+        }
+        advance(scannedStateId, range.last)
+    }
+
+    private fun advance(stateId: String, blockNumber: Long) {
+        val lastBlockNumber = stateStorage.get(stateId)?.lastBlockNumber ?: 0
+        if (blockNumber > lastBlockNumber) {
+            stateStorage.save(TransactionSyncerState(stateId, blockNumber))
+        }
+    }
+
+}
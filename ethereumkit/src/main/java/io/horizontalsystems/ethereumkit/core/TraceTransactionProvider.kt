@@ -0,0 +1,227 @@
+package io.horizontalsystems.ethereumkit.core
+
+import io.horizontalsystems.ethereumkit.api.jsonrpc.BlockNumberJsonRpc
+import io.horizontalsystems.ethereumkit.api.jsonrpc.DebugTraceTransactionJsonRpc
+import io.horizontalsystems.ethereumkit.api.jsonrpc.TraceFilterJsonRpc
+import io.horizontalsystems.ethereumkit.api.jsonrpc.TraceTransactionJsonRpc
+import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcCallFrame
+import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcTrace
+import io.horizontalsystems.ethereumkit.core.storage.TransactionSyncerStateStorage
+import io.horizontalsystems.ethereumkit.models.Address
+import io.horizontalsystems.ethereumkit.models.ProviderInternalTransaction
+import io.reactivex.Emitter
+import io.reactivex.Flowable
+import io.reactivex.Single
+import io.reactivex.functions.BiFunction
+import java.math.BigInteger
+import java.util.concurrent.Callable
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.max
+import kotlin.math.min
+
+// Takes internal transactions from node trace APIs instead of the explorer API; everything else comes from the
+// explorer provider. Internal transactions are calls with value below the top level call of a transaction.
+// With TraceApi.DebugTrace only internal transactions of a single transaction are traced, since the debug API
+// has no address filter, and the internal transactions sync stays with the explorer provider.
+class TraceTransactionProvider(
+    private val blockchain: IBlockchain,
+    private val address: Address,
+    private val explorerProvider: ITransactionProvider,
+    stateStorage: TransactionSyncerStateStorage,
+    confirmationDepth: Long,
+    private val options: Options = Options()
+) : ITransactionProvider by explorerProvider {
+
+    enum class TraceApi {
+        TraceFilter, DebugTrace
+    }
+
+    data class Options(
+        val api: TraceApi = TraceApi.TraceFilter,
+        val initialWindow: Long = 500,
+        val maxWindow: Long = 10_000,
+        val maxConcurrency: Int = 3,
+        val sparseTraceCount: Int = 100,
+        val cacheSize: Int = 100
+    )
+
+    private val checkpoint = ScanCheckpoint(stateStorage, "trace-internal", confirmationDepth)
+    private val windowSize = AtomicLong(options.initialWindow)
+    private val cache = object : LinkedHashMap<String, Single<List<ProviderInternalTransaction>>>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Single<List<ProviderInternalTransaction>>>?) =
+            size > options.cacheSize
+    }
+
+    override fun getInternalTransactions(startBlock: Long): Single<List<ProviderInternalTransaction>> =
+        getInternalTransactionsPages(startBlock).toList().map { it.flatten() }
+
+    override fun getInternalTransactionsPages(startBlock: Long): Flowable<List<ProviderInternalTransaction>> {
+        if (options.api != TraceApi.TraceFilter) {
+            return explorerProvider.getInternalTransactionsPages(startBlock)
+        }
+
+        return blockchain.rpcSingle(BlockNumberJsonRpc()).flatMapPublisher { headBlock ->
+            Flowable.fromIterable(checkpoint.ranges(startBlock, headBlock))
+                .concatMap { range -> scan(range.first, range.last) }
+        }
+    }
+
+    override fun getInternalTransactionsAsync(hash: ByteArray): Single<List<ProviderInternalTransaction>> {
+        val key = hash.toRawHexString()
+
+        return Single.defer {
+            synchronized(cache) {
+                cache.getOrPut(key) {
+                    transactionTraces(hash)
+                        .doOnError { synchronized(cache) { cache.remove(key) } }
+                        .cache()
+                }
+            }
+        }
+    }
+
+    // Windows are fetched in parallel and emitted in block order. Each received window is checkpointed after it is
+    // handed over, and only windows with internal transactions are emitted.
+    private fun scan(fromBlock: Long, toBlock: Long): Flowable<List<ProviderInternalTransaction>> {
+        if (fromBlock > toBlock) return Flowable.empty()
+
+        val ranges = Flowable.generate(Callable { fromBlock }, BiFunction<Long, Emitter<LongRange>, Long> { from, emitter ->
+            if (from > toBlock) {
+                emitter.onComplete()
+                from
+            } else {
+                val to = min(from + windowSize.get() - 1, toBlock)
+                emitter.onNext(from..to)
+                to + 1
+            }
+        })
+
+        return ranges
+            .concatMapEager({ range ->
+                window(range).flattenAsFlowable { it }.concatMapSingle { (window, traces) ->
+                    successful(valueCalls(traces)).flatMap { calls -> internalTransactions(calls) }.map { Pair(window, it) }
+                }
+            }, options.maxConcurrency, 1)
+            .doAfterNext { (window, transactions) -> checkpoint.advance(window, transactions.isNotEmpty()) }
+            .map { (_, transactions) -> transactions }
+            .filter { it.isNotEmpty() }
+    }
+
+    // A window rejected for its range or result size is split in halves, and later windows start from the smaller size.
+    // Windows with few traces let the size grow again.
+    private fun window(range: LongRange): Single<List<Pair<LongRange, List<RpcTrace>>>> {
+        return traces(range)
+            .map { traces ->
+                if (traces.size < options.sparseTraceCount) {
+                    windowSize.updateAndGet { min(it * 2, options.maxWindow) }
+                }
+                listOf(Pair(range, traces))
+            }
+            .onErrorResumeNext { error: Throwable ->
+                if (RpcLogTransactionProvider.isRangeError(error) && range.first < range.last) {
+                    val middle = range.first + (range.last - range.first) / 2
+                    windowSize.updateAndGet { min(it, max(middle - range.first + 1, 1)) }
+
+                    window(range.first..middle).flatMap { first ->
+                        window(middle + 1..range.last).map { second -> first + second }
+                    }
+                } else {
+                    Single.error(error)
+                }
+            }
+    }
+
+    private fun traces(range: LongRange): Single<List<RpcTrace>> {
+        val requests = listOf(
+            TraceFilterJsonRpc(range.first, range.last, listOf(address), null),
+            TraceFilterJsonRpc(range.first, range.last, null, listOf(address))
+        ).map { blockchain.rpcSingle(it) }
+
+        return Single.merge(requests).toList()
+            .map { results -> results.flatten().distinctBy { "${it.transactionHash?.toRawHexString()}:${it.traceAddress}" } }
+    }
+
+    private fun valueCalls(traces: List<RpcTrace>): List<RpcTrace> =
+        traces.filter { trace ->
+            trace.type == "call" && trace.action.callType == "call" && trace.traceAddress.isNotEmpty() && trace.error == null &&
+                    trace.action.value?.signum() == 1
+        }
+
+    // Calls reverted together with their transaction carry no error of their own, so they are dropped by the receipt status.
+    // One receipt is fetched per distinct transaction hash, so only calls with value should be passed in.
+    private fun successful(traces: List<RpcTrace>): Single<List<RpcTrace>> {
+        val hashes = traces.mapNotNull { it.transactionHash }.distinctBy { it.toRawHexString() }
+        if (hashes.isEmpty()) return Single.just(traces)
+
+        return Single.merge(hashes.map { blockchain.getTransactionReceipt(it) }).toList().map { receipts ->
+            val failedHashes = receipts.filter { it.status == 0L }.map { it.transactionHash.toRawHexString() }.toSet()
+            traces.filter { it.transactionHash?.toRawHexString() !in failedHashes }
+        }
+    }
+
+    private fun transactionTraces(hash: ByteArray): Single<List<ProviderInternalTransaction>> {
+        return when (options.api) {
+            TraceApi.TraceFilter -> {
+                blockchain.rpcSingle(TraceTransactionJsonRpc(hash))
+                    .flatMap { traces -> successful(valueCalls(traces)) }
+                    .flatMap { traces -> internalTransactions(traces) }
+            }
+            TraceApi.DebugTrace -> {
+                blockchain.rpcSingle(DebugTraceTransactionJsonRpc(hash)).flatMap { frame ->
+                    blockchain.getTransaction(hash).flatMap { transaction ->
+                        val blockNumber = transaction.blockNumber ?: return@flatMap Single.just(listOf<ProviderInternalTransaction>())
+
+                        blockchain.getBlock(blockNumber).map { block ->
+                            callFrames(frame, listOf()).mapNotNull { (callFrame, traceAddress) ->
+                                internalTransaction(hash, blockNumber, block.timestamp, callFrame.from, callFrame.to, callFrame.value, traceAddress)
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Frames of reverted calls are left out together with their nested calls
+    private fun callFrames(frame: RpcCallFrame, traceAddress: List<Int>): List<Pair<RpcCallFrame, List<Int>>> {
+        if (frame.error != null) return listOf()
+
+        val nested = frame.calls.orEmpty().flatMapIndexed { index, call -> callFrames(call, traceAddress + index) }
+        val own = if (traceAddress.isNotEmpty() && frame.type == "CALL") listOf(Pair(frame, traceAddress)) else listOf()
+
+        return own + nested
+    }
+
+    private fun internalTransactions(calls: List<RpcTrace>): Single<List<ProviderInternalTransaction>> {
+        val blockNumbers = calls.mapNotNull { it.blockNumber?.toLongOrNull() }.distinct()
+        if (blockNumbers.isEmpty()) return Single.just(listOf())
+
+        return Single.merge(blockNumbers.map { blockchain.getBlock(it) }).toList().map { blocks ->
+            val timestamps = blocks.associate { it.number to it.timestamp }
+
+            calls.mapNotNull { trace ->
+                val hash = trace.transactionHash ?: return@mapNotNull null
+                val blockNumber = trace.blockNumber?.toLongOrNull() ?: return@mapNotNull null
+                val timestamp = timestamps[blockNumber] ?: return@mapNotNull null
+                val traceAddress = trace.traceAddress.mapNotNull { it.toIntOrNull() }
+
+                internalTransaction(hash, blockNumber, timestamp, trace.action.from, trace.action.to, trace.action.value, traceAddress)
+            }
+        }
+    }
+
+    private fun internalTransaction(
+        hash: ByteArray,
+        blockNumber: Long,
+        timestamp: Long,
+        from: Address?,
+        to: Address?,
+        value: BigInteger?,
+        traceAddress: List<Int>
+    ): ProviderInternalTransaction? {
+        if (from == null || to == null || value == null || value.signum() == 0) return null
+
+        return ProviderInternalTransaction(hash, blockNumber, timestamp, from, to, value, traceAddress.joinToString("_"))
+    }
+
+}
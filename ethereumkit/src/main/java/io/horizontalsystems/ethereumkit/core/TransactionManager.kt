@@ -5,8 +5,8 @@ import io.horizontalsystems.ethereumkit.models.Address
 import io.horizontalsystems.ethereumkit.models.FullRpcTransaction
 import io.horizontalsystems.ethereumkit.models.FullTransaction
 import io.horizontalsystems.ethereumkit.models.Transaction
+import io.horizontalsystems.ethereumkit.models.TransactionCursor
 import io.horizontalsystems.ethereumkit.models.TransactionData
-import io.horizontalsystems.ethereumkit.models.TransactionTag
 import io.reactivex.BackpressureStrategy
 import io.reactivex.Flowable
 import io.reactivex.Single
@@ -23,6 +23,7 @@ class TransactionManager(
 
     private val fullTransactionsSubject = PublishSubject.create<Pair<List<FullTransaction>, Boolean>>()
     private val fullTransactionsWithTagsSubject = PublishSubject.create<List<TransactionWithTags>>()
+    private var pendingTransactionIndex: PendingTransactionIndex? = null
 
     val fullTransactionsAsync: Flowable<Pair<List<FullTransaction>, Boolean>> = fullTransactionsSubject.toFlowable(BackpressureStrategy.BUFFER)
 
@@ -47,69 +48,46 @@ class TransactionManager(
                 decorationManager.decorateTransactions(transactions)
             }
 
+    fun getFullTransactionsBeforeAsync(tags: List<List<String>>, cursor: TransactionCursor?, limit: Int?): Single<List<FullTransaction>> =
+        storage.getTransactionsBeforeCursorAsync(tags, cursor, limit)
+            .map { transactions ->
+                decorationManager.decorateTransactions(transactions)
+            }
+
     fun getPendingFullTransactions(tags: List<List<String>>): List<FullTransaction> =
         decorationManager.decorateTransactions(storage.getPendingTransactions(tags))
 
     fun getFullTransactions(hashes: List<ByteArray>): List<FullTransaction> =
         decorationManager.decorateTransactions(storage.getTransactions(hashes))
 
-    fun getDistinctTokenContractAddresses(): List<String> {
-        return storage.getDistinctTokenContractAddresses().map {
-            it
-                .replace("_outgoing", "")
-                .replace("_incoming", "")
-        }
-    }
-
-    private fun save(transactions: List<Transaction>) {
-        val existingTransactions = storage.getTransactions(hashes = transactions.map { it.hash }).associateBy { it.hashString }
-
-        val mergedTransactions = transactions.map { newTx ->
-            val existingTx = existingTransactions[newTx.hashString]
-
-            if (existingTx != null) {
-                Transaction(
-                    hash = existingTx.hash,
-                    timestamp = newTx.timestamp,
-                    isFailed = existingTx.isFailed || newTx.isFailed,
-
-                    blockNumber = newTx.blockNumber ?: existingTx.blockNumber,
-                    transactionIndex = newTx.transactionIndex ?: existingTx.transactionIndex,
-                    from = newTx.from ?: existingTx.from,
-                    to = newTx.to ?: existingTx.to,
-                    value = newTx.value ?: existingTx.value,
-                    input = newTx.input ?: existingTx.input,
-                    nonce = newTx.nonce ?: existingTx.nonce,
-                    gasPrice = newTx.gasPrice ?: existingTx.gasPrice,
-                    maxFeePerGas = newTx.maxFeePerGas ?: existingTx.maxFeePerGas,
-                    maxPriorityFeePerGas = newTx.maxPriorityFeePerGas ?: existingTx.maxPriorityFeePerGas,
-                    gasLimit = newTx.gasLimit ?: existingTx.gasLimit,
-                    gasUsed = newTx.gasUsed ?: existingTx.gasUsed,
-
-                    replacedWith = newTx.replacedWith ?: existingTx.replacedWith
-                )
-            } else {
-                newTx
-            }
-        }
+    @Synchronized
+    fun getPendingTransactions(): List<Transaction> =
+        pendingTransactionIndex().pendingTransactions
 
-        storage.save(mergedTransactions)
+    fun getDistinctTokenContractAddresses(): List<String> {
+        return storage.getDistinctTokenContractAddresses()
     }
 
+    @Synchronized
     fun handle(transactions: List<Transaction>, initial: Boolean = false): List<FullTransaction> {
         if (transactions.isEmpty()) return listOf()
 
-        save(transactions)
-        val failedTransactions = failPendingTransactions()
-        val fullTransactions = decorationManager.decorateTransactions(transactions + failedTransactions)
+        storage.merge(transactions)
+
+        // Syncers deliver partial rows of the same transaction, e.g. a token transfer without input, in any order.
+        // The merged stored rows are decorated instead of the handled ones, so every emission has the full transaction.
+        val storedTransactions = storage.getTransactions(transactions.map { it.hash })
+        val failedTransactions = failPendingTransactions(storedTransactions)
+        val failedHashes = failedTransactions.map { it.hashString }.toSet()
+        val fullTransactions = decorationManager.decorateTransactions(storedTransactions.filter { it.hashString !in failedHashes } + failedTransactions)
 
         val transactionWithTags = mutableListOf<TransactionWithTags>()
-        val allTags = mutableListOf<TransactionTag>()
+        val allTags = mutableListOf<Pair<String, ByteArray>>()
 
         fullTransactions.forEach { fullTransaction ->
             val tags = fullTransaction.decoration.tags()
             val transactionHash = fullTransaction.transaction.hash
-            val transactionTags = tags.map { TransactionTag(it, transactionHash) }
+            val transactionTags = tags.map { Pair(it, transactionHash) }
 
             allTags.addAll(transactionTags)
             transactionWithTags.add(TransactionWithTags(fullTransaction, tags))
@@ -152,28 +130,53 @@ class TransactionManager(
                 decorationManager.decorateTransactions(transactions)
             }
 
-    private fun failPendingTransactions(): List<Transaction> {
-        val pendingTransactions = storage.getPendingTransactions()
+    fun getFullTransactionsAfterCursorSingle(cursor: TransactionCursor?): Single<List<FullTransaction>> =
+        storage.getTransactionsAfterCursorSingle(cursor)
+            .map { transactions ->
+                decorationManager.decorateTransactions(transactions)
+            }
+
+    // Only the stored rows of the handled transactions are checked against the pending index
+    private fun failPendingTransactions(storedTransactions: List<Transaction>): List<Transaction> {
+        val index = pendingTransactionIndex()
+
+        val newPendingNonces = mutableSetOf<Long>()
+        val minedTransactions = mutableListOf<Transaction>()
+
+        for (transaction in storedTransactions) {
+            if (index.update(transaction)) {
+                transaction.nonce?.let { newPendingNonces.add(it) }
+            } else if (transaction.blockNumber != null && transaction.from == address && transaction.nonce != null) {
+                minedTransactions.add(transaction)
+            }
+        }
+
+        if (newPendingNonces.isNotEmpty()) {
+            minedTransactions.addAll(storage.getNonPendingTransactionsByNonces(address, newPendingNonces.toList()))
+        }
+
+        val processedTransactions = mutableMapOf<String, Transaction>()
 
-        if (pendingTransactions.isEmpty()) return listOf()
+        for (minedTransaction in minedTransactions) {
+            val nonce = minedTransaction.nonce ?: continue
 
-        val pendingTransactionNonces = pendingTransactions.mapNotNull { it.nonce }.toSet().toList()
-        val nonPendingTransactions = storage.getNonPendingTransactionsByNonces(address, pendingTransactionNonces)
-        val processedTransactions: MutableList<Transaction> = mutableListOf()
+            for (transaction in index.pendingTransactions(nonce)) {
+                if (transaction.hash.contentEquals(minedTransaction.hash)) continue
 
-        for (nonPendingTransaction in nonPendingTransactions) {
-            val duplicateTransactions = pendingTransactions.filter { it.nonce == nonPendingTransaction.nonce }
-            for (transaction in duplicateTransactions) {
                 transaction.isFailed = true
-                transaction.replacedWith = nonPendingTransaction.hash
-                processedTransactions.add(transaction)
+                transaction.replacedWith = minedTransaction.hash
+                processedTransactions[transaction.hashString] = transaction
+                index.remove(transaction.hashString)
             }
         }
 
-        save(processedTransactions)
-        return processedTransactions
+        storage.merge(processedTransactions.values.toList())
+        return processedTransactions.values.toList()
     }
 
+    private fun pendingTransactionIndex() =
+        pendingTransactionIndex ?: PendingTransactionIndex(storage.getPendingTransactions()).also { pendingTransactionIndex = it }
+
     data class TransactionWithTags(
         val transaction: FullTransaction,
         val tags: List<String>
@@ -3,6 +3,7 @@ package io.horizontalsystems.ethereumkit.core.storage
 import androidx.room.Dao
 import androidx.room.Insert
 import androidx.room.Query
+import io.horizontalsystems.ethereumkit.models.Address
 import io.horizontalsystems.ethereumkit.models.Eip20Event
 
 @Dao
@@ -14,10 +15,16 @@ interface Eip20EventDao {
     @Insert
     fun insertEip20Events(events: List<Eip20Event>)
 
+    @Query("DELETE FROM Eip20Event WHERE blockNumber >= :fromBlock AND (:toBlock IS NULL OR blockNumber <= :toBlock)")
+    fun deleteEip20Events(fromBlock: Long, toBlock: Long?)
+
     @Query("SELECT * FROM Eip20Event")
     fun getEip20Events(): List<Eip20Event>
 
     @Query("SELECT * FROM Eip20Event WHERE hash IN (:hashes)")
     fun getEip20EventsByHashes(hashes: List<ByteArray>): List<Eip20Event>
 
+    @Query("SELECT * FROM Eip20Event WHERE contractAddress IN (:contractAddresses) AND (tokenName != '' OR tokenSymbol != '') GROUP BY contractAddress")
+    fun getEip20EventsWithTokenInfo(contractAddresses: List<Address>): List<Eip20Event>
+
 }
@@ -1,9 +1,10 @@
 package io.horizontalsystems.ethereumkit.core.storage
 
 import io.horizontalsystems.ethereumkit.core.IEip20Storage
+import io.horizontalsystems.ethereumkit.models.Address
 import io.horizontalsystems.ethereumkit.models.Eip20Event
 
-class Eip20Storage(database: Eip20Database) : IEip20Storage {
+class Eip20Storage(private val database: Eip20Database) : IEip20Storage {
     private val erc20EventDao = database.eip20EventDao()
 
     override fun getLastEvent(): Eip20Event? =
@@ -13,10 +14,20 @@ class Eip20Storage(database: Eip20Database) : IEip20Storage {
         erc20EventDao.insertEip20Events(events)
     }
 
+    override fun replace(fromBlock: Long, toBlock: Long?, events: List<Eip20Event>) {
+        database.runInTransaction {
+            erc20EventDao.deleteEip20Events(fromBlock, toBlock)
+            erc20EventDao.insertEip20Events(events)
+        }
+    }
+
     override fun getEvents(): List<Eip20Event> =
         erc20EventDao.getEip20Events()
 
     override fun getEventsByHashes(hashes: List<ByteArray>): List<Eip20Event> =
         erc20EventDao.getEip20EventsByHashes(hashes)
 
+    override fun getEventsWithTokenInfo(contractAddresses: List<Address>): List<Eip20Event> =
+        erc20EventDao.getEip20EventsWithTokenInfo(contractAddresses)
+
 }
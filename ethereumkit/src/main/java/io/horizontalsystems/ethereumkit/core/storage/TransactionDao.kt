@@ -2,9 +2,12 @@ package io.horizontalsystems.ethereumkit.core.storage
 
 import androidx.room.*
 import androidx.sqlite.db.SupportSQLiteQuery
+import io.horizontalsystems.ethereumkit.models.Address
 import io.horizontalsystems.ethereumkit.models.InternalTransaction
+import io.horizontalsystems.ethereumkit.models.ScannedTransaction
 import io.horizontalsystems.ethereumkit.models.Transaction
 import io.reactivex.Single
+import java.math.BigInteger
 
 @Dao
 interface TransactionDao {
@@ -24,6 +27,49 @@ interface TransactionDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     fun insert(transactions: List<Transaction>)
 
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    fun insertIfAbsent(transactions: List<Transaction>): List<Long>
+
+    @Query(
+        """
+        UPDATE `Transaction` SET
+            timestamp = :timestamp,
+            isFailed = isFailed OR :isFailed,
+            blockNumber = COALESCE(:blockNumber, blockNumber),
+            transactionIndex = COALESCE(:transactionIndex, transactionIndex),
+            `from` = COALESCE(:from, `from`),
+            `to` = COALESCE(:to, `to`),
+            value = COALESCE(:value, value),
+            input = COALESCE(:input, input),
+            nonce = COALESCE(:nonce, nonce),
+            gasPrice = COALESCE(:gasPrice, gasPrice),
+            maxFeePerGas = COALESCE(:maxFeePerGas, maxFeePerGas),
+            maxPriorityFeePerGas = COALESCE(:maxPriorityFeePerGas, maxPriorityFeePerGas),
+            gasLimit = COALESCE(:gasLimit, gasLimit),
+            gasUsed = COALESCE(:gasUsed, gasUsed),
+            replacedWith = COALESCE(:replacedWith, replacedWith)
+        WHERE hash = :hash
+        """
+    )
+    fun merge(
+        hash: ByteArray,
+        timestamp: Long,
+        isFailed: Boolean,
+        blockNumber: Long?,
+        transactionIndex: Int?,
+        from: Address?,
+        to: Address?,
+        value: BigInteger?,
+        input: ByteArray?,
+        nonce: Long?,
+        gasPrice: Long?,
+        maxFeePerGas: Long?,
+        maxPriorityFeePerGas: Long?,
+        gasLimit: Long?,
+        gasUsed: Long?,
+        replacedWith: ByteArray?
+    )
+
     @Query("SELECT * FROM `Transaction` WHERE blockNumber IS NULL AND isFailed IS 0")
     fun getPendingTransactions(): List<Transaction>
 
@@ -34,12 +80,36 @@ interface TransactionDao {
     @Query("SELECT * FROM `Transaction` WHERE blockNumber IS NOT NULL AND nonce IN (:nonces) AND `from`=:from")
     fun getNonPendingByNonces(from: ByteArray, nonces: List<Long>): List<Transaction>
 
+    @Query("SELECT * FROM `Transaction` WHERE blockNumber >= :fromBlock AND (:toBlock IS NULL OR blockNumber <= :toBlock) AND (`from` = :address OR `to` = :address)")
+    fun getTransactionsInBlockRange(address: ByteArray, fromBlock: Long, toBlock: Long?): List<Transaction>
+
+    @Query("UPDATE `Transaction` SET blockNumber = NULL, transactionIndex = NULL, gasUsed = NULL, isFailed = 0 WHERE hash IN (:hashes)")
+    fun setPending(hashes: List<ByteArray>)
+
+    @Query("DELETE FROM `Transaction` WHERE hash IN (:hashes)")
+    fun delete(hashes: List<ByteArray>)
+
+    @Query("DELETE FROM `InternalTransaction` WHERE hash IN (:hashes)")
+    fun deleteInternalTransactionsByHashes(hashes: List<ByteArray>)
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun insertScannedTransactions(scannedTransactions: List<ScannedTransaction>)
+
+    @Query("SELECT * FROM `ScannedTransaction` WHERE blockNumber <= :toBlock")
+    fun getScannedTransactions(toBlock: Long): List<ScannedTransaction>
+
+    @Query("DELETE FROM `ScannedTransaction` WHERE hash IN (:hashes)")
+    fun deleteScannedTransactions(hashes: List<ByteArray>)
+
     @Query("SELECT * FROM `InternalTransaction`")
     fun getInternalTransactions(): List<InternalTransaction>
 
     @Query("SELECT * FROM `InternalTransaction` WHERE hash IN (:hashes)")
     fun getInternalTransactionsByHashes(hashes: List<ByteArray>): List<InternalTransaction>
 
+    @Query("DELETE FROM `InternalTransaction` WHERE blockNumber >= :fromBlock AND (:toBlock IS NULL OR blockNumber <= :toBlock)")
+    fun deleteInternalTransactions(fromBlock: Long, toBlock: Long?)
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     fun insertInternalTransactions(internalTransactions: List<InternalTransaction>)
 
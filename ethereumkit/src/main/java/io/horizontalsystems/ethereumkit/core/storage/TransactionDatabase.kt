@@ -8,18 +8,22 @@ import androidx.room.TypeConverter
 import androidx.room.TypeConverters
 import io.horizontalsystems.ethereumkit.api.storage.RoomTypeConverters
 import io.horizontalsystems.ethereumkit.models.InternalTransaction
+import io.horizontalsystems.ethereumkit.models.ScannedTransaction
 import io.horizontalsystems.ethereumkit.models.Transaction
 import io.horizontalsystems.ethereumkit.models.TransactionSyncerState
 import io.horizontalsystems.ethereumkit.models.TransactionTag
+import io.horizontalsystems.ethereumkit.models.TransactionTagName
 
 @Database(
         entities = [
             Transaction::class,
             InternalTransaction::class,
             TransactionTag::class,
-            TransactionSyncerState::class
+            TransactionTagName::class,
+            TransactionSyncerState::class,
+            ScannedTransaction::class
         ],
-        version = 13,
+        version = 18,
         exportSchema = false
 )
 @TypeConverters(RoomTypeConverters::class, TransactionDatabase.TypeConverters::class)
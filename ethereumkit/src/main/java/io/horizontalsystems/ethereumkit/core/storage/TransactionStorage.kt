@@ -2,122 +2,135 @@ package io.horizontalsystems.ethereumkit.core.storage
 
 import androidx.sqlite.db.SimpleSQLiteQuery
 import io.horizontalsystems.ethereumkit.core.ITransactionStorage
-import io.horizontalsystems.ethereumkit.core.toRawHexString
 import io.horizontalsystems.ethereumkit.models.Address
 import io.horizontalsystems.ethereumkit.models.InternalTransaction
+import io.horizontalsystems.ethereumkit.models.ScannedTransaction
 import io.horizontalsystems.ethereumkit.models.Transaction
+import io.horizontalsystems.ethereumkit.models.TransactionCursor
 import io.horizontalsystems.ethereumkit.models.TransactionTag
+import io.horizontalsystems.ethereumkit.models.TransactionTagName
 import io.reactivex.Single
+import java.util.concurrent.ConcurrentHashMap
 
-class TransactionStorage(database: TransactionDatabase) : ITransactionStorage {
+class TransactionStorage(private val database: TransactionDatabase) : ITransactionStorage {
     private val transactionDao = database.transactionDao()
     private val tagsDao = database.transactionTagDao()
+    private val tagIdsCache = ConcurrentHashMap<String, Long>()
 
     override fun getTransactions(hashes: List<ByteArray>): List<Transaction> =
-        transactionDao.getTransactions(hashes)
+        hashes.chunked(maxQueryArgs).flatMap { transactionDao.getTransactions(it) }
 
     override fun getTransaction(hash: ByteArray): Transaction? =
         transactionDao.getTransaction(hash)
 
     override fun getTransactionsBeforeAsync(tags: List<List<String>>, hash: ByteArray?, limit: Int?): Single<List<Transaction>> {
-        val whereConditions = mutableListOf<String>()
-
-        if (tags.isNotEmpty()) {
-            val tagConditions = tags
-                .mapIndexed { index, andTags ->
-                    val tagsString = andTags.joinToString(", ") { "'$it'" }
-                    "transaction_tags_$index.name IN ($tagsString)"
-                }
-                .joinToString(" AND ")
-
-            whereConditions.add(tagConditions)
-        }
-
-        hash?.let { transactionDao.getTransaction(hash) }?.let { fromTransaction ->
-            val transactionIndex = fromTransaction.transactionIndex ?: 0
-            val fromCondition = """
-                           (
-                                tx.timestamp < ${fromTransaction.timestamp} OR 
-                                (
-                                    tx.timestamp = ${fromTransaction.timestamp} AND 
-                                    tx.transactionIndex < $transactionIndex
-                                ) OR
-                                (
-                                    tx.timestamp = ${fromTransaction.timestamp} AND
-                                    tx.transactionIndex = $transactionIndex AND
-                                    HEX(tx.hash) < "${fromTransaction.hash.toRawHexString().uppercase()}"
-                                )
-                           )
-                           """
-
-            whereConditions.add(fromCondition)
+        return Single.defer {
+            val cursor = hash?.let { transactionDao.getTransaction(it) }?.cursor
+            getTransactionsBeforeCursorAsync(tags, cursor, limit)
         }
+    }
 
-        val transactionTagJoinStatements = tags
-            .mapIndexed { index, _ ->
-                "INNER JOIN TransactionTag AS transaction_tags_$index ON tx.hash = transaction_tags_$index.hash"
+    // The cursor condition is a range on the (timestamp, transactionIndex, hash) index, which is also scanned in
+    // the requested order, so a page reads only its own rows instead of sorting the whole table
+    override fun getTransactionsBeforeCursorAsync(tags: List<List<String>>, cursor: TransactionCursor?, limit: Int?): Single<List<Transaction>> {
+        val tagQuery = TransactionTagQuery(tags)
+
+        val sqlQuery = tagQuery.sql(Pair("before", cursor != null)) { tagCondition ->
+            val whereConditions = mutableListOf<String>()
+
+            if (cursor != null) {
+                whereConditions.add(
+                    """
+                    tx.timestamp <= ?1 AND (
+                        tx.timestamp < ?1 OR
+                        tx.transactionIndex < ?2 OR
+                        (?2 IS NOT NULL AND tx.transactionIndex IS NULL) OR
+                        (tx.transactionIndex IS ?2 AND tx.hash < ?3)
+                    )
+                    """
+                )
             }
-            .joinToString("\n")
 
-        val whereClause = if (whereConditions.isNotEmpty()) "WHERE ${whereConditions.joinToString(" AND ")}" else ""
-        val orderClause = "ORDER BY tx.timestamp DESC, tx.transactionIndex DESC, HEX(tx.hash) DESC"
-        val limitClause = limit?.let { "LIMIT $limit" } ?: ""
+            tagCondition(if (cursor != null) 5 else 2)?.let { whereConditions.add(it) }
 
-        val sqlQuery = """
-                      SELECT tx.*
-                      FROM `Transaction` as tx
-                      $transactionTagJoinStatements
-                      $whereClause
-                      $orderClause
-                      $limitClause
-                      """
+            val whereClause = if (whereConditions.isNotEmpty()) "WHERE ${whereConditions.joinToString(" AND ")}" else ""
+            val limitParam = if (cursor != null) "?4" else "?1"
+
+            """
+            SELECT tx.*
+            FROM `Transaction` as tx
+            $whereClause
+            ORDER BY tx.timestamp DESC, tx.transactionIndex DESC, tx.hash DESC
+            LIMIT $limitParam
+            """
+        }
 
-        return transactionDao.getTransactionsByRawQuery(SimpleSQLiteQuery(sqlQuery))
+        val args = mutableListOf<Any?>()
+        if (cursor != null) {
+            args.addAll(listOf(cursor.timestamp, cursor.transactionIndex, cursor.hash))
+        }
+        args.add(limit ?: -1)
+        args.addAll(tagQuery.args)
+
+        return transactionDao.getTransactionsByRawQuery(SimpleSQLiteQuery(sqlQuery, args.toTypedArray()))
     }
 
     override fun save(transactions: List<Transaction>) {
         transactionDao.insert(transactions)
     }
 
+    // New rows are inserted as they are. Existing rows only take the non-null fields of the new transaction and
+    // keep the failed flag once set, so nothing is read back and columns that are not given are not rewritten.
+    override fun merge(transactions: List<Transaction>) {
+        if (transactions.isEmpty()) return
+
+        database.runInTransaction {
+            transactions.chunked(mergeChunkSize).forEach { chunk ->
+                val rowIds = transactionDao.insertIfAbsent(chunk)
+
+                chunk.zip(rowIds).forEach { (transaction, rowId) ->
+                    if (rowId == -1L) {
+                        transactionDao.merge(
+                            hash = transaction.hash,
+                            timestamp = transaction.timestamp,
+                            isFailed = transaction.isFailed,
+                            blockNumber = transaction.blockNumber,
+                            transactionIndex = transaction.transactionIndex,
+                            from = transaction.from,
+                            to = transaction.to,
+                            value = transaction.value,
+                            input = transaction.input,
+                            nonce = transaction.nonce,
+                            gasPrice = transaction.gasPrice,
+                            maxFeePerGas = transaction.maxFeePerGas,
+                            maxPriorityFeePerGas = transaction.maxPriorityFeePerGas,
+                            gasLimit = transaction.gasLimit,
+                            gasUsed = transaction.gasUsed,
+                            replacedWith = transaction.replacedWith
+                        )
+                    }
+                }
+            }
+        }
+    }
+
     override fun getPendingTransactions(): List<Transaction> =
         transactionDao.getPendingTransactions()
 
     override fun getPendingTransactions(tags: List<List<String>>): List<Transaction> {
-        val whereConditions = mutableListOf<String>()
-        var transactionTagJoinStatements = ""
-
-        if (tags.isNotEmpty()) {
-            val tagCondition = tags
-                .mapIndexed { index, andTags ->
-                    val tagsString = andTags.joinToString(", ") { "'$it'" }
-                    "transaction_tags_$index.name IN ($tagsString)"
-                }
-                .joinToString(" AND ")
+        val tagQuery = TransactionTagQuery(tags)
 
-            whereConditions.add(tagCondition)
+        val sqlQuery = tagQuery.sql("pending") { tagCondition ->
+            val whereConditions = listOfNotNull("tx.blockNumber IS NULL", tagCondition(1))
 
-            transactionTagJoinStatements += tags
-                .mapIndexed { index, _ ->
-                    "INNER JOIN TransactionTag AS transaction_tags_$index ON tx.hash = transaction_tags_$index.hash"
-                }
-                .joinToString("\n")
+            """
+            SELECT tx.*
+            FROM `Transaction` as tx
+            WHERE ${whereConditions.joinToString(" AND ")}
+            """
         }
 
-        whereConditions.add(
-            "tx.blockNumber IS NULL"
-        )
-
-        val whereClause =
-            if (whereConditions.isNotEmpty()) "WHERE ${whereConditions.joinToString(" AND ")}" else ""
-
-        val sqlQuery = """
-                      SELECT tx.*
-                      FROM `Transaction` as tx
-                      $transactionTagJoinStatements
-                      $whereClause
-                      """
-
-        return transactionDao.getPending(SimpleSQLiteQuery(sqlQuery))
+        return transactionDao.getPending(SimpleSQLiteQuery(sqlQuery, tagQuery.args.toTypedArray()))
     }
 
     override fun getNonPendingTransactionsByNonces(from: Address, pendingTransactionNonces: List<Long>): List<Transaction> =
@@ -126,6 +139,34 @@ class TransactionStorage(database: TransactionDatabase) : ITransactionStorage {
     override fun getLastInternalTransaction(): InternalTransaction? =
         transactionDao.getLastInternalTransaction()
 
+    override fun getTransactionsInBlockRange(address: Address, fromBlock: Long, toBlock: Long?): List<Transaction> =
+        transactionDao.getTransactionsInBlockRange(address.raw, fromBlock, toBlock)
+
+    override fun setPending(hashes: List<ByteArray>) {
+        transactionDao.setPending(hashes)
+    }
+
+    override fun deleteTransactions(hashes: List<ByteArray>) {
+        database.runInTransaction {
+            hashes.chunked(maxQueryArgs).forEach { chunk ->
+                transactionDao.delete(chunk)
+                transactionDao.deleteInternalTransactionsByHashes(chunk)
+                tagsDao.delete(chunk)
+            }
+        }
+    }
+
+    override fun saveScannedTransactions(scannedTransactions: List<ScannedTransaction>) {
+        transactionDao.insertScannedTransactions(scannedTransactions)
+    }
+
+    override fun getScannedTransactions(toBlock: Long): List<ScannedTransaction> =
+        transactionDao.getScannedTransactions(toBlock)
+
+    override fun deleteScannedTransactions(hashes: List<ByteArray>) {
+        hashes.chunked(maxQueryArgs).forEach { transactionDao.deleteScannedTransactions(it) }
+    }
+
     override fun getInternalTransactions(): List<InternalTransaction> =
         transactionDao.getInternalTransactions()
 
@@ -136,38 +177,74 @@ class TransactionStorage(database: TransactionDatabase) : ITransactionStorage {
         transactionDao.insertInternalTransactions(internalTransactions)
     }
 
-    override fun saveTags(tags: List<TransactionTag>) {
-        tagsDao.insert(tags)
+    override fun replaceInternalTransactions(fromBlock: Long, toBlock: Long?, internalTransactions: List<InternalTransaction>) {
+        database.runInTransaction {
+            transactionDao.deleteInternalTransactions(fromBlock, toBlock)
+            transactionDao.insertInternalTransactions(internalTransactions)
+        }
+    }
+
+    override fun saveTags(tags: List<Pair<String, ByteArray>>) {
+        if (tags.isEmpty()) return
+
+        var tagIds = mapOf<String, Long>()
+
+        database.runInTransaction {
+            tagIds = tagIds(tags.map { it.first }.distinct())
+            tagsDao.insert(tags.map { (name, hash) -> TransactionTag(tagIds.getValue(name), hash) })
+        }
+
+        // Ids of names inserted in the transaction are known to be stored only once it is committed
+        tagIdsCache.putAll(tagIds)
+    }
+
+    // Tag names are few and never removed, so their ids are kept in memory once known
+    private fun tagIds(names: List<String>): Map<String, Long> {
+        val ids = mutableMapOf<String, Long>()
+        names.forEach { name -> tagIdsCache[name]?.let { ids[name] = it } }
+
+        val missingNames = names.filter { !ids.containsKey(it) }
+
+        missingNames.chunked(maxQueryArgs).forEach { chunk ->
+            tagsDao.insertNames(chunk.map { TransactionTagName.from(it) })
+            tagsDao.getNames(chunk).forEach { ids[it.name] = it.id }
+        }
+
+        return ids
     }
 
+    // Prefixes of the directional tags, i.e. token contracts and the coin tag. The dictionary holds each name once.
     override fun getDistinctTokenContractAddresses(): List<String> {
-        return tagsDao.getDistinctTokenContractAddresses()
+        return tagsDao.getDirectionalNames().map { it.substringBeforeLast("_") }.distinct()
     }
 
     override fun getTransactionsAfterSingle(hash: ByteArray?): Single<List<Transaction>> {
+        return Single.defer {
+            val cursor = hash?.let { transactionDao.getTransaction(it) }?.cursor
+            getTransactionsAfterCursorSingle(cursor)
+        }
+    }
+
+    override fun getTransactionsAfterCursorSingle(cursor: TransactionCursor?): Single<List<Transaction>> {
         val whereConditions = mutableListOf<String>()
-        hash?.let { transactionDao.getTransaction(hash) }?.let { fromTransaction ->
-            val transactionIndex = fromTransaction.transactionIndex ?: 0
-            val fromCondition = """
-                           (
-                                tx.timestamp > ${fromTransaction.timestamp} OR 
-                                (
-                                    tx.timestamp = ${fromTransaction.timestamp} AND 
-                                    tx.transactionIndex > $transactionIndex
-                                ) OR
-                                (
-                                    tx.timestamp = ${fromTransaction.timestamp} AND
-                                    tx.transactionIndex = $transactionIndex AND
-                                    HEX(tx.hash) > "${fromTransaction.hash.toRawHexString().uppercase()}"
-                                )
-                           )
-                           """
-
-            whereConditions.add(fromCondition)
+        val args = mutableListOf<Any?>()
+
+        if (cursor != null) {
+            whereConditions.add(
+                """
+                tx.timestamp >= ?1 AND (
+                    tx.timestamp > ?1 OR
+                    tx.transactionIndex > ?2 OR
+                    (?2 IS NULL AND tx.transactionIndex IS NOT NULL) OR
+                    (tx.transactionIndex IS ?2 AND tx.hash > ?3)
+                )
+                """
+            )
+            args.addAll(listOf(cursor.timestamp, cursor.transactionIndex, cursor.hash))
         }
 
         val whereClause = if (whereConditions.isNotEmpty()) "WHERE ${whereConditions.joinToString(" AND ")}" else ""
-        val orderClause = "ORDER BY tx.timestamp, tx.transactionIndex, HEX(tx.hash)"
+        val orderClause = "ORDER BY tx.timestamp, tx.transactionIndex, tx.hash"
 
         val sqlQuery = """
                       SELECT tx.*
@@ -176,6 +253,11 @@ class TransactionStorage(database: TransactionDatabase) : ITransactionStorage {
                       $orderClause
                       """
 
-        return transactionDao.getTransactionsByRawQuery(SimpleSQLiteQuery(sqlQuery))
+        return transactionDao.getTransactionsByRawQuery(SimpleSQLiteQuery(sqlQuery, args.toTypedArray()))
+    }
+
+    companion object {
+        private const val maxQueryArgs = 900
+        private const val mergeChunkSize = 500
     }
 }
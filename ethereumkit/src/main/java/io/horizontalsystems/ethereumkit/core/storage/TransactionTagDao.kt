@@ -5,6 +5,7 @@ import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import io.horizontalsystems.ethereumkit.models.TransactionTag
+import io.horizontalsystems.ethereumkit.models.TransactionTagName
 
 @Dao
 interface TransactionTagDao {
@@ -12,7 +13,16 @@ interface TransactionTagDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     fun insert(tags: List<TransactionTag>)
 
-    @Query("SELECT DISTINCT name FROM TransactionTag WHERE name LIKE '%_outgoing' OR name LIKE '%_incoming'")
-    fun getDistinctTokenContractAddresses(): List<String>
+    @Query("DELETE FROM TransactionTag WHERE hash IN (:hashes)")
+    fun delete(hashes: List<ByteArray>)
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    fun insertNames(names: List<TransactionTagName>)
+
+    @Query("SELECT * FROM TransactionTagName WHERE name IN (:names)")
+    fun getNames(names: List<String>): List<TransactionTagName>
+
+    @Query("SELECT name FROM TransactionTagName WHERE direction IS NOT NULL")
+    fun getDirectionalNames(): List<String>
 
 }
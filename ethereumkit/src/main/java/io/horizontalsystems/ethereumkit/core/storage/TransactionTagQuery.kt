@@ -0,0 +1,36 @@
+package io.horizontalsystems.ethereumkit.core.storage
+
+import java.util.concurrent.ConcurrentHashMap
+
+// Tag filter with bound parameters: a transaction matches when it has any tag of every group.
+// The SQL text depends only on the shape of the filter (the number of tags in each group and the other clauses of
+// the query), so it is built once per shape and SQLite reuses the statement compiled for it.
+class TransactionTagQuery(private val tags: List<List<String>>) {
+
+    val args: List<Any?>
+        get() = tags.flatten()
+
+    fun sql(key: Any, build: (condition: (firstArgIndex: Int) -> String?) -> String): String {
+        val shape = tags.map { it.size }
+
+        return statements.getOrPut(Pair(shape, key)) {
+            build { firstArgIndex -> condition(shape, firstArgIndex) }
+        }
+    }
+
+    companion object {
+        private val statements = ConcurrentHashMap<Pair<List<Int>, Any>, String>()
+
+        private fun condition(shape: List<Int>, firstArgIndex: Int): String? {
+            if (shape.isEmpty()) return null
+
+            var argIndex = firstArgIndex
+
+            return shape.joinToString(" AND ") { size ->
+                val params = (0 until size).joinToString(", ") { "?${argIndex++}" }
+                "EXISTS (SELECT 1 FROM TransactionTag AS tag WHERE tag.hash = tx.hash AND tag.tagId IN (SELECT id FROM TransactionTagName WHERE name IN ($params)))"
+            }
+        }
+    }
+
+}
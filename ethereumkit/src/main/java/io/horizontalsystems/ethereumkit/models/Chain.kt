@@ -5,19 +5,20 @@ enum class Chain(
     val coinType: Int,
     val gasLimit: Long,
     val syncInterval: Long,
-    val isEIP1559Supported: Boolean
+    val isEIP1559Supported: Boolean,
+    val confirmationDepth: Long
 ) {
-    Ethereum(1, 60, 2_000_000, 15, true),
-    BinanceSmartChain(56, 60, 10_000_000, 15, false),
-    Base(8453, 60, 20_000_000, 15, true),
-    ZkSync(324, 60, 10_000_000, 15, true),
-    Polygon(137, 60, 10_000_000, 15, true),
-    Optimism(10, 60, 10_000_000, 15, true),
-    ArbitrumOne(42161, 60, 10_000_000, 15, true),
-    Avalanche(43114, 60, 10_000_000, 15, true),
-    Gnosis(100, 60, 10_000_000, 15, true),
-    Fantom(250, 60, 10_000_000, 15, false),
-    EthereumGoerli(5, 1, 10_000_000, 15, true);
+    Ethereum(1, 60, 2_000_000, 15, true, 12),
+    BinanceSmartChain(56, 60, 10_000_000, 15, false, 15),
+    Base(8453, 60, 20_000_000, 15, true, 20),
+    ZkSync(324, 60, 10_000_000, 15, true, 20),
+    Polygon(137, 60, 10_000_000, 15, true, 128),
+    Optimism(10, 60, 10_000_000, 15, true, 20),
+    ArbitrumOne(42161, 60, 10_000_000, 15, true, 20),
+    Avalanche(43114, 60, 10_000_000, 15, true, 1),
+    Gnosis(100, 60, 10_000_000, 15, true, 20),
+    Fantom(250, 60, 10_000_000, 15, false, 1),
+    EthereumGoerli(5, 1, 10_000_000, 15, true, 12);
 
     val isMainNet = coinType != 1
 }
@@ -0,0 +1,51 @@
+package io.horizontalsystems.ethereumkit.models
+
+import io.horizontalsystems.ethereumkit.crypto.CryptoUtils
+
+// 2048-bit bloom of the addresses and topics of all logs in a block or receipt.
+// A bloom of unexpected size may contain anything, so it never rules out a match.
+class LogsBloom(private val bytes: ByteArray) {
+
+    fun mayContain(element: BloomElement): Boolean {
+        if (bytes.size != size) return true
+
+        for (i in 0 until 3) {
+            if (bytes[element.byteIndexes[i]].toInt() and element.masks[i] == 0) {
+                return false
+            }
+        }
+
+        return true
+    }
+
+    fun mayContainAny(elements: Collection<BloomElement>): Boolean =
+        elements.any { mayContain(it) }
+
+    companion object {
+        const val size = 256
+    }
+
+}
+
+// The three bloom bits of an element are computed once, so testing it against many blooms is only byte lookups
+class BloomElement(element: ByteArray) {
+    internal val byteIndexes = IntArray(3)
+    internal val masks = IntArray(3)
+
+    init {
+        val hash = CryptoUtils.sha3(element)
+
+        for (i in 0 until 3) {
+            val bitPosition = (((hash[i * 2].toInt() and 0xff) shl 8) or (hash[i * 2 + 1].toInt() and 0xff)) and 2047
+
+            byteIndexes[i] = LogsBloom.size - 1 - bitPosition / 8
+            masks[i] = 1 shl (bitPosition % 8)
+        }
+    }
+
+    companion object {
+        fun contractAddress(address: Address) = BloomElement(address.raw)
+        fun addressTopic(address: Address) = BloomElement(ByteArray(12) + address.raw)
+    }
+
+}
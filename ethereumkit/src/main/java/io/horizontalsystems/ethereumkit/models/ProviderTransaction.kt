@@ -25,7 +25,7 @@ data class ProviderTokenTransaction(
     var blockNumber: Long,
     val timestamp: Long,
     val hash: ByteArray,
-    val nonce: Long,
+    val nonce: Long?,
     var blockHash: ByteArray,
     val from: Address,
     val contractAddress: Address,
@@ -37,10 +37,10 @@ data class ProviderTokenTransaction(
     val tokenDecimal: Int,
 
     var transactionIndex: Int,
-    val gasLimit: Long,
-    val gasPrice: Long,
-    var gasUsed: Long,
-    var cumulativeGasUsed: Long
+    val gasLimit: Long?,
+    val gasPrice: Long?,
+    var gasUsed: Long?,
+    var cumulativeGasUsed: Long?
 )
 
 data class ProviderInternalTransaction(
@@ -61,13 +61,13 @@ data class ProviderEip721Transaction(
     val blockNumber: Long,
     val timestamp: Long,
     val hash: ByteArray,
-    val nonce: Long,
+    val nonce: Long?,
     val blockHash: ByteArray,
     val transactionIndex: Int,
-    val gasLimit: Long,
-    val gasPrice: Long,
-    val gasUsed: Long,
-    val cumulativeGasUsed: Long,
+    val gasLimit: Long?,
+    val gasPrice: Long?,
+    val gasUsed: Long?,
+    val cumulativeGasUsed: Long?,
 
     val contractAddress: Address,
     val from: Address,
@@ -82,13 +82,13 @@ data class ProviderEip1155Transaction(
     val blockNumber: Long,
     val timestamp: Long,
     val hash: ByteArray,
-    val nonce: Long,
+    val nonce: Long?,
     val blockHash: ByteArray,
     val transactionIndex: Int,
-    val gasLimit: Long,
-    val gasPrice: Long,
-    val gasUsed: Long,
-    val cumulativeGasUsed: Long,
+    val gasLimit: Long?,
+    val gasPrice: Long?,
+    val gasUsed: Long?,
+    val cumulativeGasUsed: Long?,
 
     val contractAddress: Address,
     val from: Address,
@@ -0,0 +1,14 @@
+package io.horizontalsystems.ethereumkit.models
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+// Transaction found by the head block scanner, kept until its block is verified below the confirmation depth
+@Entity(indices = [Index("blockNumber")])
+class ScannedTransaction(
+    @PrimaryKey
+    val hash: ByteArray,
+    val blockNumber: Long,
+    val blockHash: ByteArray
+)
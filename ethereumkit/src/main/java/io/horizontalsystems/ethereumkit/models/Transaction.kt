@@ -2,11 +2,12 @@ package io.horizontalsystems.ethereumkit.models
 
 import androidx.room.Entity
 import androidx.room.Ignore
+import androidx.room.Index
 import androidx.room.PrimaryKey
 import io.horizontalsystems.ethereumkit.core.toHexString
 import java.math.BigInteger
 
-@Entity
+@Entity(indices = [Index("timestamp", "transactionIndex", "hash")])
 data class Transaction(
     @PrimaryKey
     val hash: ByteArray,
@@ -29,6 +30,9 @@ data class Transaction(
     var replacedWith: ByteArray? = null
 ) {
 
+    val cursor: TransactionCursor
+        get() = TransactionCursor(timestamp, transactionIndex, hash)
+
     @delegate:Ignore
     val hashString: String by lazy {
         hash.toHexString()
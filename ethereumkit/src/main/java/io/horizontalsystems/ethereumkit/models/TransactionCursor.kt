@@ -0,0 +1,21 @@
+package io.horizontalsystems.ethereumkit.models
+
+// Position of a transaction in the history order (timestamp, transactionIndex, hash).
+// Pending transactions have no transactionIndex and are ordered below mined transactions of the same timestamp.
+data class TransactionCursor(
+    val timestamp: Long,
+    val transactionIndex: Int?,
+    val hash: ByteArray
+) {
+
+    override fun equals(other: Any?): Boolean {
+        if (other !is TransactionCursor) return false
+
+        return timestamp == other.timestamp && transactionIndex == other.transactionIndex && hash.contentEquals(other.hash)
+    }
+
+    override fun hashCode(): Int {
+        return hash.contentHashCode()
+    }
+
+}
@@ -7,5 +7,6 @@ import androidx.room.PrimaryKey
 class TransactionSyncerState(
     @PrimaryKey
     val syncerId: String,
-    val lastBlockNumber: Long
+    val lastBlockNumber: Long,
+    val lastBlockHash: ByteArray? = null
 )
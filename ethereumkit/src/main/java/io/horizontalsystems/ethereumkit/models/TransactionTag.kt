@@ -1,10 +1,11 @@
 package io.horizontalsystems.ethereumkit.models
 
 import androidx.room.Entity
+import androidx.room.Index
 
-@Entity(primaryKeys = ["name", "hash"])
+@Entity(primaryKeys = ["tagId", "hash"], indices = [Index("hash")])
 class TransactionTag(
-        val name: String,
+        val tagId: Long,
         val hash: ByteArray
 ) {
 
@@ -0,0 +1,52 @@
+package io.horizontalsystems.ethereumkit.models
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+
+// Dictionary of tag names. Transaction tags refer to it by id, and the structured columns let
+// tags be selected by kind, e.g. contracts of token tags, without matching the names.
+@Entity(
+    indices = [
+        Index("name", unique = true),
+        Index("kind", "address")
+    ]
+)
+data class TransactionTagName(
+    val name: String,
+    val kind: Kind,
+    val address: String?,
+    val direction: Direction?,
+    @PrimaryKey(autoGenerate = true)
+    val id: Long = 0
+) {
+
+    enum class Kind {
+        Coin, Token, From, To, Other
+    }
+
+    enum class Direction {
+        Incoming, Outgoing
+    }
+
+    companion object {
+        fun from(name: String): TransactionTagName {
+            val direction = when {
+                name.endsWith("_${TransactionTag.INCOMING}") -> Direction.Incoming
+                name.endsWith("_${TransactionTag.OUTGOING}") -> Direction.Outgoing
+                else -> null
+            }
+            val prefix = direction?.let { name.substringBeforeLast("_") }
+
+            return when {
+                name == TransactionTag.EVM_COIN -> TransactionTagName(name, Kind.Coin, null, null)
+                prefix == TransactionTag.EVM_COIN -> TransactionTagName(name, Kind.Coin, null, direction)
+                prefix != null -> TransactionTagName(name, Kind.Token, prefix, direction)
+                name.startsWith("from_") -> TransactionTagName(name, Kind.From, name.removePrefix("from_"), null)
+                name.startsWith("to_") -> TransactionTagName(name, Kind.To, name.removePrefix("to_"), null)
+                else -> TransactionTagName(name, Kind.Other, null, null)
+            }
+        }
+    }
+
+}
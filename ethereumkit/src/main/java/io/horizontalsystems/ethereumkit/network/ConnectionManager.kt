@@ -16,6 +16,8 @@ class ConnectionManager(context: Context) {
 
     var listener: Listener? = null
     var isConnected = getInitialConnectionStatus()
+    val isMetered: Boolean
+        get() = connectivityManager.isActiveNetworkMetered
     private var hasValidInternet = false
     private var hasConnection = false
     private var callback = ConnectionStatusCallback()
@@ -0,0 +1,226 @@
+package io.horizontalsystems.ethereumkit.network
+
+import io.reactivex.Single
+import io.reactivex.SingleEmitter
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
+import java.util.LinkedList
+import java.util.concurrent.TimeUnit
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+
+class EtherscanApiKeyPool(
+    apiKeys: List<String>,
+    private var options: Options
+) {
+
+    data class Options(
+        val requestsPerSecond: Double = 5.0,
+        val requestsPerDay: Long = 100_000,
+        val minCooldown: Long = 1_000,
+        val maxCooldown: Long = 60_000
+    )
+
+    data class KeyStatus(
+        val apiKey: String,
+        val availableRequests: Double,
+        val availableDailyRequests: Double,
+        val cooldownUntil: Long?
+    )
+
+    private class TokenBucket(private var capacity: Double, private var refillPerMilli: Double) {
+        private var tokens = capacity
+        private var updatedAt = System.currentTimeMillis()
+
+        fun update(capacity: Double, refillPerMilli: Double) {
+            available(System.currentTimeMillis())
+            this.capacity = capacity
+            this.refillPerMilli = refillPerMilli
+            tokens = min(capacity, tokens)
+        }
+
+        fun available(now: Long): Double {
+            tokens = min(capacity, tokens + (now - updatedAt) * refillPerMilli)
+            updatedAt = now
+            return tokens
+        }
+
+        fun take() {
+            tokens -= 1
+        }
+
+        fun giveBack() {
+            tokens = min(capacity, tokens + 1)
+        }
+
+        fun millisUntilAvailable(now: Long): Long {
+            val missing = 1 - available(now)
+            return if (missing <= 0) 0 else ceil(missing / refillPerMilli).toLong()
+        }
+    }
+
+    private inner class Key(val value: String) {
+        val secondBucket = TokenBucket(options.requestsPerSecond, options.requestsPerSecond / 1_000)
+        val dayBucket = TokenBucket(options.requestsPerDay.toDouble(), options.requestsPerDay / 86_400_000.0)
+        var cooldown = 0L
+        var cooldownUntil = 0L
+
+        fun update(options: Options) {
+            secondBucket.update(options.requestsPerSecond, options.requestsPerSecond / 1_000)
+            dayBucket.update(options.requestsPerDay.toDouble(), options.requestsPerDay / 86_400_000.0)
+            cooldown = min(cooldown, options.maxCooldown)
+        }
+
+        fun millisUntilAvailable(now: Long): Long =
+            max(max(cooldownUntil - now, 0), max(secondBucket.millisUntilAvailable(now), dayBucket.millisUntilAvailable(now)))
+    }
+
+    private val keys = apiKeys.ifEmpty { listOf("") }.distinct().map { Key(it) }
+    private val keysByValue = keys.associateBy { it.value }
+    private val waiters = LinkedList<SingleEmitter<String>>()
+    private var nextKeyIndex = 0
+    private var dispatchTask: Disposable? = null
+
+    // Requests are served in FIFO order. A key is leased only when both its per-second and per-day buckets
+    // have a token and it is not cooling down after a rate limit error; otherwise the request waits in the queue.
+    fun lease(): Single<String> {
+        return Single.create { emitter ->
+            val leases = synchronized(this) {
+                waiters.add(emitter)
+                emitter.setCancellable { cancel(emitter) }
+                dispatch()
+            }
+            emit(leases)
+        }
+    }
+
+    @Synchronized
+    fun onRateLimitExceeded(apiKey: String) {
+        val key = keysByValue[apiKey] ?: return
+
+        key.cooldown = if (key.cooldown == 0L) options.minCooldown else min(key.cooldown * 2, options.maxCooldown)
+        key.cooldownUntil = System.currentTimeMillis() + key.cooldown
+    }
+
+    @Synchronized
+    fun onSuccess(apiKey: String) {
+        keysByValue[apiKey]?.cooldown = 0
+    }
+
+    @Synchronized
+    fun statuses(): List<KeyStatus> {
+        val now = System.currentTimeMillis()
+
+        return keys.map {
+            KeyStatus(it.value, it.secondBucket.available(now), it.dayBucket.available(now), it.cooldownUntil.takeIf { until -> until > now })
+        }
+    }
+
+    private fun update(options: Options) {
+        val leases = synchronized(this) {
+            this.options = options
+            keys.forEach { it.update(options) }
+            dispatch()
+        }
+        emit(leases)
+    }
+
+    @Synchronized
+    private fun cancel(emitter: SingleEmitter<String>) {
+        waiters.remove(emitter)
+    }
+
+    private fun onDispatchTimer() {
+        val leases = synchronized(this) {
+            dispatchTask = null
+            dispatch()
+        }
+        emit(leases)
+    }
+
+    // Leases are emitted outside of the lock, since subscribers start their requests synchronously.
+    // A waiter disposed after its key was taken from the queue gives the request back to the key.
+    private fun emit(leases: List<Pair<SingleEmitter<String>, String>>) {
+        val unused = leases.filter { (emitter, apiKey) ->
+            if (emitter.isDisposed) return@filter true
+
+            emitter.onSuccess(apiKey)
+            false
+        }
+
+        if (unused.isEmpty()) return
+
+        val nextLeases = synchronized(this) {
+            unused.forEach { (_, apiKey) ->
+                keysByValue[apiKey]?.let {
+                    it.secondBucket.giveBack()
+                    it.dayBucket.giveBack()
+                }
+            }
+            dispatch()
+        }
+        emit(nextLeases)
+    }
+
+    private fun dispatch(): List<Pair<SingleEmitter<String>, String>> {
+        val leases = mutableListOf<Pair<SingleEmitter<String>, String>>()
+
+        while (waiters.isNotEmpty()) {
+            val now = System.currentTimeMillis()
+            val key = nextAvailableKey(now)
+
+            if (key == null) {
+                scheduleDispatch(keys.minOf { it.millisUntilAvailable(now) })
+                break
+            }
+
+            key.secondBucket.take()
+            key.dayBucket.take()
+            leases.add(Pair(waiters.removeFirst(), key.value))
+        }
+
+        return leases
+    }
+
+    private fun nextAvailableKey(now: Long): Key? {
+        for (i in keys.indices) {
+            val key = keys[(nextKeyIndex + i) % keys.size]
+
+            if (key.millisUntilAvailable(now) == 0L) {
+                nextKeyIndex = (nextKeyIndex + i + 1) % keys.size
+                return key
+            }
+        }
+
+        return null
+    }
+
+    private fun scheduleDispatch(delay: Long) {
+        if (dispatchTask != null) return
+
+        dispatchTask = Schedulers.io().scheduleDirect({ onDispatchTimer() }, max(delay, 1), TimeUnit.MILLISECONDS)
+    }
+
+    companion object {
+        private var options = Options()
+        private val pools = mutableMapOf<String, EtherscanApiKeyPool>()
+
+        // Applies to pools that are already shared as well
+        fun configure(options: Options) {
+            val sharedPools = synchronized(this) {
+                this.options = options
+                pools.values.toList()
+            }
+            sharedPools.forEach { it.update(options) }
+        }
+
+        // Limits are imposed per API key, so every service using the same set of keys shares one pool
+        @Synchronized
+        fun shared(apiKeys: List<String>): EtherscanApiKeyPool {
+            val id = apiKeys.sorted().joinToString(",")
+            return pools.getOrPut(id) { EtherscanApiKeyPool(apiKeys, options) }
+        }
+    }
+
+}
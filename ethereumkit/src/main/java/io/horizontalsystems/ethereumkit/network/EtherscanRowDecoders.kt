@@ -0,0 +1,337 @@
+package io.horizontalsystems.ethereumkit.network
+
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import io.horizontalsystems.ethereumkit.core.hexStringToByteArray
+import io.horizontalsystems.ethereumkit.models.Address
+import io.horizontalsystems.ethereumkit.models.ProviderEip1155Transaction
+import io.horizontalsystems.ethereumkit.models.ProviderEip721Transaction
+import io.horizontalsystems.ethereumkit.models.ProviderInternalTransaction
+import io.horizontalsystems.ethereumkit.models.ProviderTokenTransaction
+import io.horizontalsystems.ethereumkit.models.ProviderTransaction
+
+// Decodes a single element of Etherscan "result" array straight into a provider model.
+// Returns null for rows that are not objects or miss/contain malformed required fields, leaving the reader after the row.
+interface EtherscanRowDecoder<T> {
+    // Block number of the row last passed to decode, also when the row itself could not be decoded
+    val rowBlockNumber: Long?
+
+    fun decode(reader: JsonReader): T?
+}
+
+class ProviderTransactionDecoder : EtherscanRowDecoder<ProviderTransaction> {
+    override var rowBlockNumber: Long? = null
+        private set
+
+    override fun decode(reader: JsonReader): ProviderTransaction? {
+        var blockNumber: String? = null
+        var timestamp: String? = null
+        var hash: String? = null
+        var nonce: String? = null
+        var blockHash: String? = null
+        var transactionIndex: String? = null
+        var from: String? = null
+        var to: String? = null
+        var value: String? = null
+        var gasLimit: String? = null
+        var gasPrice: String? = null
+        var isError: String? = null
+        var txReceiptStatus: String? = null
+        var input: String? = null
+        var cumulativeGasUsed: String? = null
+        var gasUsed: String? = null
+
+        val isObject = reader.forEachField { name ->
+            when (name) {
+                "blockNumber" -> blockNumber = reader.nextStringOrNull()
+                "timeStamp" -> timestamp = reader.nextStringOrNull()
+                "hash" -> hash = reader.nextStringOrNull()
+                "nonce" -> nonce = reader.nextStringOrNull()
+                "blockHash" -> blockHash = reader.nextStringOrNull()
+                "transactionIndex" -> transactionIndex = reader.nextStringOrNull()
+                "from" -> from = reader.nextStringOrNull()
+                "to" -> to = reader.nextStringOrNull()
+                "value" -> value = reader.nextStringOrNull()
+                "gas" -> gasLimit = reader.nextStringOrNull()
+                "gasPrice" -> gasPrice = reader.nextStringOrNull()
+                "isError" -> isError = reader.nextStringOrNull()
+                "txreceipt_status" -> txReceiptStatus = reader.nextStringOrNull()
+                "input" -> input = reader.nextStringOrNull()
+                "cumulativeGasUsed" -> cumulativeGasUsed = reader.nextStringOrNull()
+                "gasUsed" -> gasUsed = reader.nextStringOrNull()
+                else -> reader.skipValue()
+            }
+        }
+        rowBlockNumber = blockNumber?.toLongOrNull()
+        if (!isObject) return null
+
+        return try {
+            ProviderTransaction(
+                blockNumber = blockNumber!!.toLong(),
+                timestamp = timestamp!!.toLong(),
+                hash = hash!!.hexStringToByteArray(),
+                nonce = nonce!!.toLong(),
+                blockHash = blockHash?.hexStringToByteArray(),
+                transactionIndex = transactionIndex!!.toInt(),
+                from = Address(from!!),
+                to = to.toAddressOrNull(),
+                value = value!!.toBigInteger(),
+                gasLimit = gasLimit!!.toLong(),
+                gasPrice = gasPrice!!.toLong(),
+                isError = isError?.toIntOrNull(),
+                txReceiptStatus = txReceiptStatus?.toIntOrNull(),
+                input = input!!.hexStringToByteArray(),
+                cumulativeGasUsed = cumulativeGasUsed?.toLongOrNull(),
+                gasUsed = gasUsed?.toLongOrNull()
+            )
+        } catch (error: Throwable) {
+            null
+        }
+    }
+}
+
+// Internal transactions requested by transaction hash come without "hash" field, so the requested hash is used instead
+class ProviderInternalTransactionDecoder(private val transactionHash: ByteArray? = null) : EtherscanRowDecoder<ProviderInternalTransaction> {
+    override var rowBlockNumber: Long? = null
+        private set
+
+    override fun decode(reader: JsonReader): ProviderInternalTransaction? {
+        var hash: String? = null
+        var blockNumber: String? = null
+        var timestamp: String? = null
+        var from: String? = null
+        var to: String? = null
+        var value: String? = null
+        var traceId: String? = null
+
+        val isObject = reader.forEachField { name ->
+            when (name) {
+                "hash" -> hash = reader.nextStringOrNull()
+                "blockNumber" -> blockNumber = reader.nextStringOrNull()
+                "timeStamp" -> timestamp = reader.nextStringOrNull()
+                "from" -> from = reader.nextStringOrNull()
+                "to" -> to = reader.nextStringOrNull()
+                "value" -> value = reader.nextStringOrNull()
+                "traceId" -> traceId = reader.nextStringOrNull()
+                else -> reader.skipValue()
+            }
+        }
+        rowBlockNumber = blockNumber?.toLongOrNull()
+        if (!isObject) return null
+
+        return try {
+            ProviderInternalTransaction(
+                hash = transactionHash ?: hash!!.hexStringToByteArray(),
+                blockNumber = blockNumber!!.toLong(),
+                timestamp = timestamp!!.toLong(),
+                from = Address(from!!),
+                to = Address(to!!),
+                value = value!!.toBigInteger(),
+                traceId = traceId!!
+            )
+        } catch (error: Throwable) {
+            null
+        }
+    }
+}
+
+class ProviderTokenTransactionDecoder : EtherscanRowDecoder<ProviderTokenTransaction> {
+    override var rowBlockNumber: Long? = null
+        private set
+
+    override fun decode(reader: JsonReader): ProviderTokenTransaction? {
+        val fields = TokenTransferFields()
+        var value: String? = null
+        var tokenDecimal: String? = null
+
+        val isObject = reader.forEachField { name ->
+            when (name) {
+                "value" -> value = reader.nextStringOrNull()
+                "tokenDecimal" -> tokenDecimal = reader.nextStringOrNull()
+                else -> fields.read(name, reader)
+            }
+        }
+        rowBlockNumber = fields.blockNumber?.toLongOrNull()
+        if (!isObject) return null
+
+        return try {
+            ProviderTokenTransaction(
+                blockNumber = fields.blockNumber!!.toLong(),
+                timestamp = fields.timestamp!!.toLong(),
+                hash = fields.hash!!.hexStringToByteArray(),
+                nonce = fields.nonce!!.toLong(),
+                blockHash = fields.blockHash!!.hexStringToByteArray(),
+                from = Address(fields.from!!),
+                contractAddress = Address(fields.contractAddress!!),
+                to = Address(fields.to!!),
+                value = value!!.toBigInteger(),
+                tokenName = fields.tokenName!!,
+                tokenSymbol = fields.tokenSymbol!!,
+                tokenDecimal = tokenDecimal!!.toInt(),
+                transactionIndex = fields.transactionIndex!!.toInt(),
+                gasLimit = fields.gasLimit!!.toLong(),
+                gasPrice = fields.gasPrice!!.toLong(),
+                gasUsed = fields.gasUsed!!.toLong(),
+                cumulativeGasUsed = fields.cumulativeGasUsed!!.toLong()
+            )
+        } catch (error: Throwable) {
+            null
+        }
+    }
+}
+
+class ProviderEip721TransactionDecoder : EtherscanRowDecoder<ProviderEip721Transaction> {
+    override var rowBlockNumber: Long? = null
+        private set
+
+    override fun decode(reader: JsonReader): ProviderEip721Transaction? {
+        val fields = TokenTransferFields()
+        var tokenId: String? = null
+        var tokenDecimal: String? = null
+
+        val isObject = reader.forEachField { name ->
+            when (name) {
+                "tokenID" -> tokenId = reader.nextStringOrNull()
+                "tokenDecimal" -> tokenDecimal = reader.nextStringOrNull()
+                else -> fields.read(name, reader)
+            }
+        }
+        rowBlockNumber = fields.blockNumber?.toLongOrNull()
+        if (!isObject) return null
+
+        return try {
+            ProviderEip721Transaction(
+                blockNumber = fields.blockNumber!!.toLong(),
+                timestamp = fields.timestamp!!.toLong(),
+                hash = fields.hash!!.hexStringToByteArray(),
+                nonce = fields.nonce!!.toLong(),
+                blockHash = fields.blockHash!!.hexStringToByteArray(),
+                transactionIndex = fields.transactionIndex!!.toInt(),
+                gasLimit = fields.gasLimit!!.toLong(),
+                gasPrice = fields.gasPrice!!.toLong(),
+                gasUsed = fields.gasUsed!!.toLong(),
+                cumulativeGasUsed = fields.cumulativeGasUsed!!.toLong(),
+                contractAddress = Address(fields.contractAddress!!),
+                from = Address(fields.from!!),
+                to = Address(fields.to!!),
+                tokenId = tokenId!!.toBigInteger(),
+                tokenName = fields.tokenName!!,
+                tokenSymbol = fields.tokenSymbol!!,
+                tokenDecimal = tokenDecimal!!.toInt()
+            )
+        } catch (error: Throwable) {
+            null
+        }
+    }
+}
+
+class ProviderEip1155TransactionDecoder : EtherscanRowDecoder<ProviderEip1155Transaction> {
+    override var rowBlockNumber: Long? = null
+        private set
+
+    override fun decode(reader: JsonReader): ProviderEip1155Transaction? {
+        val fields = TokenTransferFields()
+        var tokenId: String? = null
+        var tokenValue: String? = null
+
+        val isObject = reader.forEachField { name ->
+            when (name) {
+                "tokenID" -> tokenId = reader.nextStringOrNull()
+                "tokenValue" -> tokenValue = reader.nextStringOrNull()
+                else -> fields.read(name, reader)
+            }
+        }
+        rowBlockNumber = fields.blockNumber?.toLongOrNull()
+        if (!isObject) return null
+
+        return try {
+            ProviderEip1155Transaction(
+                blockNumber = fields.blockNumber!!.toLong(),
+                timestamp = fields.timestamp!!.toLong(),
+                hash = fields.hash!!.hexStringToByteArray(),
+                nonce = fields.nonce!!.toLong(),
+                blockHash = fields.blockHash!!.hexStringToByteArray(),
+                transactionIndex = fields.transactionIndex!!.toInt(),
+                gasLimit = fields.gasLimit!!.toLong(),
+                gasPrice = fields.gasPrice!!.toLong(),
+                gasUsed = fields.gasUsed!!.toLong(),
+                cumulativeGasUsed = fields.cumulativeGasUsed!!.toLong(),
+                contractAddress = Address(fields.contractAddress!!),
+                from = Address(fields.from!!),
+                to = Address(fields.to!!),
+                tokenId = tokenId!!.toBigInteger(),
+                tokenValue = tokenValue!!.toInt(),
+                tokenName = fields.tokenName!!,
+                tokenSymbol = fields.tokenSymbol!!
+            )
+        } catch (error: Throwable) {
+            null
+        }
+    }
+}
+
+// Fields shared by tokentx, tokennfttx and token1155tx rows
+private class TokenTransferFields {
+    var blockNumber: String? = null
+    var timestamp: String? = null
+    var hash: String? = null
+    var nonce: String? = null
+    var blockHash: String? = null
+    var from: String? = null
+    var contractAddress: String? = null
+    var to: String? = null
+    var tokenName: String? = null
+    var tokenSymbol: String? = null
+    var transactionIndex: String? = null
+    var gasLimit: String? = null
+    var gasPrice: String? = null
+    var gasUsed: String? = null
+    var cumulativeGasUsed: String? = null
+
+    fun read(name: String, reader: JsonReader) {
+        when (name) {
+            "blockNumber" -> blockNumber = reader.nextStringOrNull()
+            "timeStamp" -> timestamp = reader.nextStringOrNull()
+            "hash" -> hash = reader.nextStringOrNull()
+            "nonce" -> nonce = reader.nextStringOrNull()
+            "blockHash" -> blockHash = reader.nextStringOrNull()
+            "from" -> from = reader.nextStringOrNull()
+            "contractAddress" -> contractAddress = reader.nextStringOrNull()
+            "to" -> to = reader.nextStringOrNull()
+            "tokenName" -> tokenName = reader.nextStringOrNull()
+            "tokenSymbol" -> tokenSymbol = reader.nextStringOrNull()
+            "transactionIndex" -> transactionIndex = reader.nextStringOrNull()
+            "gas" -> gasLimit = reader.nextStringOrNull()
+            "gasPrice" -> gasPrice = reader.nextStringOrNull()
+            "gasUsed" -> gasUsed = reader.nextStringOrNull()
+            "cumulativeGasUsed" -> cumulativeGasUsed = reader.nextStringOrNull()
+            else -> reader.skipValue()
+        }
+    }
+}
+
+private inline fun JsonReader.forEachField(block: (String) -> Unit): Boolean {
+    if (peek() != JsonToken.BEGIN_OBJECT) {
+        skipValue()
+        return false
+    }
+
+    beginObject()
+    while (hasNext()) {
+        block(nextName())
+    }
+    endObject()
+    return true
+}
+
+private fun JsonReader.nextStringOrNull(): String? =
+    when (peek()) {
+        JsonToken.STRING, JsonToken.NUMBER -> nextString()
+        else -> {
+            skipValue()
+            null
+        }
+    }
+
+private fun String?.toAddressOrNull(): Address? =
+    if (!isNullOrEmpty()) Address(this) else null
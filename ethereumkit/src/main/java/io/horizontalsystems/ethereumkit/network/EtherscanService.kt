@@ -1,49 +1,49 @@
 package io.horizontalsystems.ethereumkit.network
 
-import com.google.gson.Gson
 import com.google.gson.GsonBuilder
-import com.google.gson.JsonElement
-import com.google.gson.reflect.TypeToken
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
 import io.horizontalsystems.ethereumkit.api.models.EtherscanResponse
-import io.horizontalsystems.ethereumkit.core.retryWhenError
 import io.horizontalsystems.ethereumkit.core.toHexString
 import io.horizontalsystems.ethereumkit.models.Address
+import io.horizontalsystems.ethereumkit.models.ProviderEip1155Transaction
+import io.horizontalsystems.ethereumkit.models.ProviderEip721Transaction
+import io.horizontalsystems.ethereumkit.models.ProviderInternalTransaction
+import io.horizontalsystems.ethereumkit.models.ProviderTokenTransaction
+import io.horizontalsystems.ethereumkit.models.ProviderTransaction
 import io.reactivex.Single
-import okhttp3.OkHttpClient
+import okhttp3.ResponseBody
 import okhttp3.logging.HttpLoggingInterceptor
 import retrofit2.Retrofit
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory
 import retrofit2.converter.gson.GsonConverterFactory
 import retrofit2.http.GET
 import retrofit2.http.Query
+import retrofit2.http.Streaming
 import java.util.logging.Logger
 
 class EtherscanService(
     baseUrl: String,
-    private val apiKeys: List<String>,
+    apiKeys: List<String>,
     private val chainId: Int,
 ) {
-    private val apiKeysSize = apiKeys.size
-    private var apiKeyIndex = 0
+    private val keyPool = EtherscanApiKeyPool.shared(apiKeys)
 
     private val logger = Logger.getLogger("EtherscanService")
 
     private val service: EtherscanServiceAPI
 
-    private val gson: Gson
-
     init {
         val loggingInterceptor = HttpLoggingInterceptor {
             logger.info(it)
         }.setLevel(HttpLoggingInterceptor.Level.BASIC)
 
-        val httpClient = OkHttpClient.Builder()
+        val httpClient = HttpClientRegistry.newBuilder()
             .addInterceptor { chain ->
                 val originalRequest = chain.request()
                 val originalUrl = originalRequest.url
 
                 val url = originalUrl.newBuilder()
-                    .addQueryParameter("apikey", getNextApiKey())
                     .addQueryParameter("chainid", chainId.toString())
                     .build()
 
@@ -56,7 +56,7 @@ class EtherscanService(
             }
             .addInterceptor(loggingInterceptor)
 
-        gson = GsonBuilder()
+        val gson = GsonBuilder()
             .setLenient()
             .create()
 
@@ -70,90 +70,198 @@ class EtherscanService(
         service = retrofit.create(EtherscanServiceAPI::class.java)
     }
 
-    private fun getNextApiKey(): String {
-        if (apiKeyIndex >= apiKeysSize) apiKeyIndex = 0
+    fun getTransactionList(address: Address, startBlock: Long): Single<EtherscanResponse<ProviderTransaction>> {
+        return request { apiKey ->
+            service.accountApi(
+                apiKey = apiKey,
+                action = "txlist",
+                address = address.hex,
+                startBlock = startBlock,
+            ).map {
+                parseResponse(it, ProviderTransactionDecoder())
+            }
+        }
+    }
+
+    fun getInternalTransactionList(address: Address, startBlock: Long): Single<EtherscanResponse<ProviderInternalTransaction>> {
+        return request { apiKey ->
+            service.accountApi(
+                apiKey = apiKey,
+                action = "txlistinternal",
+                address = address.hex,
+                startBlock = startBlock,
+            ).map {
+                parseResponse(it, ProviderInternalTransactionDecoder())
+            }
+        }
+    }
+
+    fun getTokenTransactions(address: Address, startBlock: Long): Single<EtherscanResponse<ProviderTokenTransaction>> {
+        return request { apiKey ->
+            service.accountApi(
+                apiKey = apiKey,
+                action = "tokentx",
+                address = address.hex,
+                startBlock = startBlock,
+            ).map {
+                parseResponse(it, ProviderTokenTransactionDecoder())
+            }
+        }
+    }
+
+    fun getInternalTransactionsAsync(transactionHash: ByteArray): Single<EtherscanResponse<ProviderInternalTransaction>> {
+        return request { apiKey ->
+            service.accountApi(
+                apiKey = apiKey,
+                action = "txlistinternal",
+                txHash = transactionHash.toHexString(),
+            ).map {
+                parseResponse(it, ProviderInternalTransactionDecoder(transactionHash))
+            }
+        }
+    }
+
+    fun getEip721Transactions(address: Address, startBlock: Long): Single<EtherscanResponse<ProviderEip721Transaction>> {
+        return request { apiKey ->
+            service.accountApi(
+                apiKey = apiKey,
+                action = "tokennfttx",
+                address = address.hex,
+                startBlock = startBlock,
+            ).map {
+                parseResponse(it, ProviderEip721TransactionDecoder())
+            }
+        }
+    }
+
+    fun getEip1155Transactions(address: Address, startBlock: Long): Single<EtherscanResponse<ProviderEip1155Transaction>> {
+        return request { apiKey ->
+            service.accountApi(
+                apiKey = apiKey,
+                action = "token1155tx",
+                address = address.hex,
+                startBlock = startBlock,
+            ).map {
+                parseResponse(it, ProviderEip1155TransactionDecoder())
+            }
+        }
+    }
 
-        return apiKeys[apiKeyIndex++]
+    fun getTransactionListPage(address: Address, startBlock: Long, endBlock: Long?, page: Int, offset: Int): Single<EtherscanResponse<ProviderTransaction>> {
+        return accountPage("txlist", address, startBlock, endBlock, page, offset, ProviderTransactionDecoder())
     }
 
-    fun getTransactionList(address: Address, startBlock: Long): Single<EtherscanResponse> {
-        return service.accountApi(
-            action = "txlist",
-            address = address.hex,
-            startBlock = startBlock,
-        ).map {
-            parseResponse(it)
-        }.retryWhenError(RequestError.RateLimitExceed::class)
+    fun getInternalTransactionListPage(address: Address, startBlock: Long, endBlock: Long?, page: Int, offset: Int): Single<EtherscanResponse<ProviderInternalTransaction>> {
+        return accountPage("txlistinternal", address, startBlock, endBlock, page, offset, ProviderInternalTransactionDecoder())
     }
 
-    fun getInternalTransactionList(address: Address, startBlock: Long): Single<EtherscanResponse> {
-        return service.accountApi(
-            action = "txlistinternal",
-            address = address.hex,
-            startBlock = startBlock,
-        ).map {
-            parseResponse(it)
-        }.retryWhenError(RequestError.RateLimitExceed::class)
+    fun getTokenTransactionsPage(address: Address, startBlock: Long, endBlock: Long?, page: Int, offset: Int): Single<EtherscanResponse<ProviderTokenTransaction>> {
+        return accountPage("tokentx", address, startBlock, endBlock, page, offset, ProviderTokenTransactionDecoder())
     }
 
-    fun getTokenTransactions(address: Address, startBlock: Long): Single<EtherscanResponse> {
-        return service.accountApi(
-            action = "tokentx",
-            address = address.hex,
-            startBlock = startBlock,
-        ).map {
-            parseResponse(it)
-        }.retryWhenError(RequestError.RateLimitExceed::class)
+    fun getEip721TransactionsPage(address: Address, startBlock: Long, endBlock: Long?, page: Int, offset: Int): Single<EtherscanResponse<ProviderEip721Transaction>> {
+        return accountPage("tokennfttx", address, startBlock, endBlock, page, offset, ProviderEip721TransactionDecoder())
     }
 
-    fun getInternalTransactionsAsync(transactionHash: ByteArray): Single<EtherscanResponse> {
-        return service.accountApi(
-            action = "txlistinternal",
-            txHash = transactionHash.toHexString(),
-        ).map {
-            parseResponse(it)
-        }.retryWhenError(RequestError.RateLimitExceed::class)
+    fun getEip1155TransactionsPage(address: Address, startBlock: Long, endBlock: Long?, page: Int, offset: Int): Single<EtherscanResponse<ProviderEip1155Transaction>> {
+        return accountPage("token1155tx", address, startBlock, endBlock, page, offset, ProviderEip1155TransactionDecoder())
     }
 
-    fun getEip721Transactions(address: Address, startBlock: Long): Single<EtherscanResponse> {
-        return service.accountApi(
-            action = "tokennfttx",
-            address = address.hex,
-            startBlock = startBlock,
-        ).map {
-            parseResponse(it)
-        }.retryWhenError(RequestError.RateLimitExceed::class)
+    private fun <T> accountPage(
+        action: String,
+        address: Address,
+        startBlock: Long,
+        endBlock: Long?,
+        page: Int,
+        offset: Int,
+        decoder: EtherscanRowDecoder<T>
+    ): Single<EtherscanResponse<T>> {
+        return request { apiKey ->
+            service.accountApi(
+                apiKey = apiKey,
+                action = action,
+                address = address.hex,
+                startBlock = startBlock,
+                endBlock = endBlock,
+                page = page,
+                offset = offset,
+                sort = "asc"
+            ).map {
+                parseResponse(it, decoder)
+            }
+        }
     }
 
-    fun getEip1155Transactions(address: Address, startBlock: Long): Single<EtherscanResponse> {
-        return service.accountApi(
-            action = "token1155tx",
-            address = address.hex,
-            startBlock = startBlock,
-        ).map {
-            parseResponse(it)
-        }.retryWhenError(RequestError.RateLimitExceed::class)
+    private fun <T> request(call: (apiKey: String?) -> Single<T>): Single<T> {
+        return keyPool.lease()
+            .flatMap { apiKey ->
+                call(apiKey.ifEmpty { null })
+                    .doOnSuccess { keyPool.onSuccess(apiKey) }
+                    .doOnError { if (it is RequestError.RateLimitExceed) keyPool.onRateLimitExceeded(apiKey) }
+            }
+            .retry { count, error -> error is RequestError.RateLimitExceed && count <= maxRateLimitRetries }
     }
 
-    private fun parseResponse(response: JsonElement): EtherscanResponse {
+    // The body is read as a stream and every row of "result" is decoded directly into its model,
+    // so neither the JSON tree nor intermediate maps of the whole response are kept in memory
+    private fun <T> parseResponse(body: ResponseBody, decoder: EtherscanRowDecoder<T>): EtherscanResponse<T> {
         try {
-            val responseObj = response.asJsonObject
-            val status = responseObj["status"].asJsonPrimitive.asString
-            val message = responseObj["message"].asJsonPrimitive.asString
+            body.use {
+                val reader = JsonReader(body.charStream())
+                reader.isLenient = true
 
-            if (status == "0" && message != "No transactions found") {
-                val result = responseObj["result"].asJsonPrimitive.asString
-                if (message == "NOTOK" && result == "Max rate limit reached") {
+                var status: String? = null
+                var message: String? = null
+                var result: List<T>? = null
+                var rowCount = 0
+                var firstRowBlock: Long? = null
+                var lastRowBlock: Long? = null
+                var error: String? = null
+
+                reader.beginObject()
+                while (reader.hasNext()) {
+                    when (reader.nextName()) {
+                        "status" -> status = reader.nextString()
+                        "message" -> message = reader.nextString()
+                        "result" -> {
+                            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                                val rows = mutableListOf<T>()
+                                reader.beginArray()
+                                while (reader.hasNext()) {
+                                    rowCount++
+                                    decoder.decode(reader)?.let { rows.add(it) }
+                                    decoder.rowBlockNumber?.let { blockNumber ->
+                                        if (firstRowBlock == null) firstRowBlock = blockNumber
+                                        lastRowBlock = blockNumber
+                                    }
+                                }
+                                reader.endArray()
+                                result = rows
+                            } else if (reader.peek() == JsonToken.STRING) {
+                                error = reader.nextString()
+                            } else {
+                                reader.skipValue()
+                            }
+                        }
+                        else -> reader.skipValue()
+                    }
+                }
+                reader.endObject()
+
+                if (message == "NOTOK" && error == "Max rate limit reached") {
                     throw RequestError.RateLimitExceed()
                 }
-            }
-            val result: List<Map<String, String>> = gson.fromJson(responseObj["result"], object : TypeToken<List<Map<String, String>>>() {}.type)
-            return EtherscanResponse(status, message, result)
 
-        } catch (rateLimitExceeded: RequestError.RateLimitExceed) {
-            throw rateLimitExceeded
+                if (status == null || message == null || result == null) {
+                    throw RequestError.ResponseError("Unexpected response: status: $status, message: $message, result: $error")
+                }
+
+                return EtherscanResponse(status, message, result, rowCount, firstRowBlock, lastRowBlock)
+            }
+        } catch (requestError: RequestError) {
+            throw requestError
         } catch (err: Throwable) {
-            throw RequestError.ResponseError("Unexpected response: $response")
+            throw RequestError.ResponseError("Unexpected response: ${err.message}")
         }
     }
 
@@ -163,16 +271,24 @@ class EtherscanService(
     }
 
     private interface EtherscanServiceAPI {
+        @Streaming
         @GET("api")
         fun accountApi(
+            @Query("apikey") apiKey: String?,
             @Query("module") module: String = "account",
             @Query("action") action: String,
             @Query("address") address: String? = null,
             @Query("txhash") txHash: String? = null,
             @Query("startblock") startBlock: Long? = null,
             @Query("endblock") endBlock: Long? = null,
+            @Query("page") page: Int? = null,
+            @Query("offset") offset: Int? = null,
             @Query("sort") sort: String? = "desc"
-        ): Single<JsonElement>
+        ): Single<ResponseBody>
+    }
+
+    companion object {
+        private const val maxRateLimitRetries = 5
     }
 
 }
@@ -0,0 +1,54 @@
+package io.horizontalsystems.ethereumkit.network
+
+import okhttp3.ConnectionPool
+import okhttp3.Dispatcher
+import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import java.util.concurrent.TimeUnit
+
+object HttpClientRegistry {
+
+    data class Options(
+        val maxIdleConnections: Int = 16,
+        val keepAliveMinutes: Long = 5,
+        val maxRequests: Int = 64,
+        val maxRequestsPerHost: Int = 10
+    )
+
+    private var options = Options()
+    private var sharedClient: OkHttpClient? = null
+
+    /**
+     * Sets the options of the shared client. If the client is already built, it is rebuilt with a new
+     * connection pool and dispatcher on the next [client] call. Clients taken before keep the previous
+     * pool and dispatcher, so configure is meant to be called before the kits are created.
+     */
+    @Synchronized
+    fun configure(options: Options) {
+        this.options = options
+        sharedClient = null
+    }
+
+    @Synchronized
+    fun client(): OkHttpClient {
+        return sharedClient ?: createClient(options).also { sharedClient = it }
+    }
+
+    fun newBuilder(): OkHttpClient.Builder {
+        return client().newBuilder()
+    }
+
+    private fun createClient(options: Options): OkHttpClient {
+        val dispatcher = Dispatcher().apply {
+            maxRequests = options.maxRequests
+            maxRequestsPerHost = options.maxRequestsPerHost
+        }
+
+        return OkHttpClient.Builder()
+            .connectionPool(ConnectionPool(options.maxIdleConnections, options.keepAliveMinutes, TimeUnit.MINUTES))
+            .dispatcher(dispatcher)
+            .protocols(listOf(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .build()
+    }
+
+}
@@ -136,7 +136,7 @@ class SpvBlockchain(
         TODO("not implemented")
     }
 
-    override fun call(contractAddress: Address, data: ByteArray, defaultBlockParameter: DefaultBlockParameter): Single<ByteArray> {
+    override fun call(contractAddress: Address, data: ByteArray, defaultBlockParameter: DefaultBlockParameter, aggregate: Boolean?): Single<ByteArray> {
         TODO("not implemented")
     }
 
@@ -1,69 +1,159 @@
 package io.horizontalsystems.ethereumkit.transactionsyncers
 
 import io.horizontalsystems.ethereumkit.core.ITransactionProvider
+import io.horizontalsystems.ethereumkit.core.ITransactionStorage
 import io.horizontalsystems.ethereumkit.core.ITransactionSyncer
 import io.horizontalsystems.ethereumkit.core.storage.TransactionSyncerStateStorage
+import io.horizontalsystems.ethereumkit.core.toRawHexString
+import io.horizontalsystems.ethereumkit.models.Address
 import io.horizontalsystems.ethereumkit.models.ProviderTransaction
 import io.horizontalsystems.ethereumkit.models.Transaction
 import io.horizontalsystems.ethereumkit.models.TransactionSyncerState
+import io.reactivex.Flowable
 import io.reactivex.Single
 
 class EthereumTransactionSyncer(
         private val transactionProvider: ITransactionProvider,
-        private val storage: TransactionSyncerStateStorage
+        private val storage: TransactionSyncerStateStorage,
+        private val transactionStorage: ITransactionStorage,
+        private val address: Address,
+        confirmationDepth: Long = 0
 ) : ITransactionSyncer {
 
     companion object {
         const val SyncerId = "ethereum-transaction-syncer"
     }
 
+    private class ReorgDetected : Exception()
+
+    private val reorgWindow = ReorgWindow(confirmationDepth)
+
     override fun getTransactionsSingle(): Single<Pair<List<Transaction>, Boolean>> {
         val lastTransactionBlockNumber = storage.get(SyncerId)?.lastBlockNumber ?: 0
         val initial = lastTransactionBlockNumber == 0L
 
         return transactionProvider.getTransactions(lastTransactionBlockNumber + 1)
                 .doOnSuccess { providerTransactions -> handle(providerTransactions) }
-                .map { providerTransactions ->
-                    val array = providerTransactions.map { transaction ->
-                        val isFailed = when {
-                            transaction.txReceiptStatus != null -> {
-                                transaction.txReceiptStatus != 1
-                            }
-                            transaction.isError != null -> {
-                                transaction.isError != 0
-                            }
-                            transaction.gasUsed != null -> {
-                                transaction.gasUsed == transaction.gasLimit
-                            }
-                            else -> {
-                                false
-                            }
-                        }
+                .map { providerTransactions -> Pair(transactions(providerTransactions), initial) }
+    }
+
+    override fun getTransactionsFlowable(): Flowable<Pair<List<Transaction>, Boolean>> {
+        val state = storage.get(SyncerId)
+        val lastBlockNumber = state?.lastBlockNumber ?: 0
+        val lastBlockHash = state?.lastBlockHash
+        val initial = lastBlockNumber == 0L
 
-                        Transaction(
-                                hash = transaction.hash,
-                                timestamp = transaction.timestamp,
-                                isFailed = isFailed,
-                                blockNumber = transaction.blockNumber,
-                                transactionIndex = transaction.transactionIndex,
-                                from = transaction.from,
-                                to = transaction.to,
-                                value = transaction.value,
-                                input = transaction.input,
-                                nonce = transaction.nonce,
-                                gasPrice = transaction.gasPrice,
-                                gasUsed = transaction.gasUsed
-                        )
+        if (lastBlockHash == null) {
+            return scan(reorgWindow.startBlock(lastBlockNumber), lastBlockNumber, initial)
+        }
+
+        // Blocks are chained by hash, so while the cursor block keeps its hash nothing at or below it was reorganized
+        // and the scan continues from the cursor. Otherwise the confirmation window below the cursor is scanned again.
+        return scan(lastBlockNumber, lastBlockNumber, initial, lastBlockHash)
+                .onErrorResumeNext { error: Throwable ->
+                    if (error is ReorgDetected) {
+                        scan(reorgWindow.startBlock(lastBlockNumber), lastBlockNumber, initial)
+                    } else {
+                        Flowable.error(error)
                     }
+                }
+    }
+
+    private fun scan(startBlock: Long, lastBlockNumber: Long, initial: Boolean, lastBlockHash: ByteArray? = null): Flowable<Pair<List<Transaction>, Boolean>> {
+        val pages = transactionProvider.getTransactionsPages(startBlock).let { pages ->
+            if (lastBlockHash != null) verified(pages, lastBlockNumber, lastBlockHash) else pages
+        }
 
-                    Pair(array, initial)
+        // The cursor is only advanced once the page has been handed over, so a failure mid-history resumes from the last delivered page
+        return reorgWindow
+                .reconcile(startBlock, pages, { it.blockNumber }) { fromBlock, toBlock, providerTransactions ->
+                    removedTransactions(fromBlock, toBlock ?: lastBlockNumber, providerTransactions)
                 }
-                .onErrorReturnItem(Pair(listOf(), initial))
+                .doAfterNext { (providerTransactions, _) -> handle(providerTransactions) }
+                .map { (providerTransactions, removedTransactions) -> Pair(transactions(providerTransactions) + removedTransactions, initial) }
     }
 
+    private fun verified(pages: Flowable<List<ProviderTransaction>>, blockNumber: Long, blockHash: ByteArray): Flowable<List<ProviderTransaction>> {
+        return Flowable.defer {
+            var verified = false
+
+            pages
+                    .doOnNext { providerTransactions ->
+                        if (!verified) {
+                            val cursorTransactions = providerTransactions.filter { it.blockNumber == blockNumber }
+                            if (cursorTransactions.isEmpty() || cursorTransactions.any { it.blockHash?.contentEquals(blockHash) == false }) {
+                                throw ReorgDetected()
+                            }
+                            verified = true
+                        }
+                    }
+                    .doOnComplete {
+                        if (!verified) throw ReorgDetected()
+                    }
+        }
+    }
+
+    // Stored transactions of this address that are no longer returned for the covered blocks were reorganized out.
+    // Own transactions are set back to pending, so they get either mined again or failed by the pending transactions check.
+    // Transactions of other senders are deleted, since nothing would resolve them as pending; they are stored again
+    // when mined in another block.
+    // Blocks above the previous cursor are not checked after the last page, since transactions found through RPC may
+    // be mined in blocks the provider has not indexed yet.
+    private fun removedTransactions(fromBlock: Long, toBlock: Long, providerTransactions: List<ProviderTransaction>): List<Transaction> {
+        if (toBlock < fromBlock) return listOf()
+
+        val receivedHashes = providerTransactions.map { it.hash.toRawHexString() }.toSet()
+        val (ownTransactions, otherTransactions) = transactionStorage.getTransactionsInBlockRange(address, fromBlock, toBlock)
+                .filter { it.hash.toRawHexString() !in receivedHashes }
+                .partition { it.from == address }
+
+        if (otherTransactions.isNotEmpty()) {
+            transactionStorage.deleteTransactions(otherTransactions.map { it.hash })
+        }
+
+        val removedHashes = ownTransactions.map { it.hash }
+        if (removedHashes.isEmpty()) return listOf()
+
+        transactionStorage.setPending(removedHashes)
+        return transactionStorage.getTransactions(removedHashes)
+    }
+
+    private fun transactions(providerTransactions: List<ProviderTransaction>) =
+            providerTransactions.map { transaction ->
+                val isFailed = when {
+                    transaction.txReceiptStatus != null -> {
+                        transaction.txReceiptStatus != 1
+                    }
+                    transaction.isError != null -> {
+                        transaction.isError != 0
+                    }
+                    transaction.gasUsed != null -> {
+                        transaction.gasUsed == transaction.gasLimit
+                    }
+                    else -> {
+                        false
+                    }
+                }
+
+                Transaction(
+                        hash = transaction.hash,
+                        timestamp = transaction.timestamp,
+                        isFailed = isFailed,
+                        blockNumber = transaction.blockNumber,
+                        transactionIndex = transaction.transactionIndex,
+                        from = transaction.from,
+                        to = transaction.to,
+                        value = transaction.value,
+                        input = transaction.input,
+                        nonce = transaction.nonce,
+                        gasPrice = transaction.gasPrice,
+                        gasUsed = transaction.gasUsed
+                )
+            }
+
     private fun handle(transactions: List<ProviderTransaction>) {
-        val maxBlockNumber = transactions.maxOfOrNull { it.blockNumber } ?: return
-        val syncerState = TransactionSyncerState(SyncerId, maxBlockNumber)
+        val lastTransaction = transactions.maxByOrNull { it.blockNumber } ?: return
+        val syncerState = TransactionSyncerState(SyncerId, lastTransaction.blockNumber, lastTransaction.blockHash)
 
         storage.save(syncerState)
     }
@@ -0,0 +1,220 @@
+package io.horizontalsystems.ethereumkit.transactionsyncers
+
+import io.horizontalsystems.ethereumkit.api.jsonrpc.GetBlockWithTransactionsJsonRpc
+import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
+import io.horizontalsystems.ethereumkit.api.jsonrpc.models.RpcTransaction
+import io.horizontalsystems.ethereumkit.core.IBlockchain
+import io.horizontalsystems.ethereumkit.core.ITransactionStorage
+import io.horizontalsystems.ethereumkit.core.TransactionManager
+import io.horizontalsystems.ethereumkit.core.hexStringToByteArray
+import io.horizontalsystems.ethereumkit.core.toRawHexString
+import io.horizontalsystems.ethereumkit.models.Address
+import io.horizontalsystems.ethereumkit.models.BloomElement
+import io.horizontalsystems.ethereumkit.models.LogsBloom
+import io.horizontalsystems.ethereumkit.models.ScannedTransaction
+import io.horizontalsystems.ethereumkit.models.Transaction
+import io.horizontalsystems.ethereumkit.network.ConnectionManager
+import io.reactivex.BackpressureStrategy
+import io.reactivex.Flowable
+import io.reactivex.Single
+import io.reactivex.disposables.Disposable
+import io.reactivex.schedulers.Schedulers
+import io.reactivex.subjects.PublishSubject
+import kotlin.math.max
+
+// Scans every new head block for transactions of the address, so they are handled without waiting for the
+// transaction provider to index them. The provider sync still completes them later with receipt data and
+// internal or token transfers.
+// Transactions sent by others that emitted logs with the address as a topic, like incoming token transfers, are
+// found by the logs of the block. The logs are only requested when the logs bloom of the block may contain the address.
+// With fullBlocks off only block headers are fetched, so transactions without such logs are left to the provider sync.
+// Found transactions are above the provider sync cursor and outside of its reorg checks, so their block hashes are kept
+// and verified once the head is confirmationDepth blocks above them.
+class HeadBlockScanner(
+    private val address: Address,
+    private val blockchain: IBlockchain,
+    private val transactionManager: TransactionManager,
+    private val transactionStorage: ITransactionStorage,
+    private val connectionManager: ConnectionManager,
+    private val confirmationDepth: Long,
+    private val options: Options
+) {
+
+    private class ScannedBlock(val number: Long, val hash: ByteArray?, val transactions: List<Transaction>)
+
+    data class Options(
+        val enabled: Boolean = false,
+        val scanOnMeteredNetwork: Boolean = false,
+        val maxCatchUpBlocks: Int = 5,
+        val fullBlocks: Boolean = true
+    )
+
+    private val addressTopic = ByteArray(12) + address.raw
+    private val watchedElements = listOf(BloomElement.addressTopic(address))
+
+    private val heads = PublishSubject.create<Long>()
+    private var disposable: Disposable? = null
+
+    @Volatile
+    private var lastScannedBlock: Long? = null
+
+    @Volatile
+    var enabled = options.enabled
+
+    val isActive: Boolean
+        get() = enabled && (options.scanOnMeteredNetwork || !connectionManager.isMetered)
+
+    fun start() {
+        if (disposable != null) return
+
+        // Only the latest head is kept while a scan is running; the blocks in between are covered by the catch-up
+        disposable = heads.toFlowable(BackpressureStrategy.LATEST)
+            .observeOn(Schedulers.io(), false, 1)
+            .concatMapCompletable({ head -> scan(head).andThen(verify(head)) }, 1)
+            .subscribe()
+    }
+
+    fun stop() {
+        disposable?.dispose()
+        disposable = null
+    }
+
+    fun onUpdateLastBlockHeight(lastBlockHeight: Long) {
+        heads.onNext(lastBlockHeight)
+    }
+
+    // Blocks missed since the last scan are fetched again, but never more than maxCatchUpBlocks below the head.
+    // A failed block stops the scan, so it is retried with the next head.
+    private fun scan(head: Long) =
+        Flowable.defer {
+            val fromBlock = max((lastScannedBlock ?: (head - 1)) + 1, head - options.maxCatchUpBlocks + 1)
+
+            if (!isActive || fromBlock > head) {
+                Flowable.empty()
+            } else {
+                Flowable.rangeLong(fromBlock, head - fromBlock + 1)
+                    .concatMapEager { blockNumber -> blockTransactions(blockNumber).toFlowable() }
+            }
+        }
+            .doOnNext { block ->
+                transactionManager.handle(block.transactions)
+
+                block.hash?.let { blockHash ->
+                    transactionStorage.saveScannedTransactions(block.transactions.map { ScannedTransaction(it.hash, block.number, blockHash) })
+                }
+                lastScannedBlock = block.number
+            }
+            .ignoreElements()
+            .onErrorComplete()
+
+    // Transactions whose block still has the recorded hash are confirmed. Otherwise the block was reorganized: a transaction
+    // mined in another block is handled with its new block, an own one that is gone is set back to pending, and one of
+    // another sender that is gone is deleted. Failed checks are repeated with the next head.
+    private fun verify(head: Long) =
+        Flowable.defer {
+            val scannedTransactions = transactionStorage.getScannedTransactions(head - confirmationDepth)
+
+            Flowable.fromIterable(scannedTransactions.groupBy { it.blockNumber }.values)
+                .concatMapSingle { blockTransactions ->
+                    blockchain.getBlock(blockTransactions.first().blockNumber).flatMap { block ->
+                        val reorganized = blockTransactions.filter { block.hash != null && !it.blockHash.contentEquals(block.hash) }
+
+                        Single.concat(reorganized.map { reorganizedTransaction(it.hash) }).toList()
+                            .map { blockTransactions }
+                    }
+                }
+        }
+            .doOnNext { blockTransactions -> transactionStorage.deleteScannedTransactions(blockTransactions.map { it.hash }) }
+            .ignoreElements()
+            .onErrorComplete()
+
+    private fun reorganizedTransaction(hash: ByteArray): Single<Unit> {
+        return blockchain.getTransaction(hash)
+            .flatMap { rpcTransaction ->
+                val blockNumber = rpcTransaction.blockNumber ?: return@flatMap Single.just(removeTransaction(hash))
+
+                blockchain.getBlock(blockNumber).map { block ->
+                    transactionManager.handle(listOf(transaction(rpcTransaction, block.timestamp)))
+                    Unit
+                }
+            }
+            .onErrorResumeNext { error: Throwable ->
+                if (error is JsonRpc.ResponseError.InvalidResult) {
+                    Single.just(removeTransaction(hash))
+                } else {
+                    Single.error(error)
+                }
+            }
+    }
+
+    private fun removeTransaction(hash: ByteArray) {
+        val transaction = transactionStorage.getTransaction(hash) ?: return
+
+        if (transaction.from == address) {
+            transactionStorage.setPending(listOf(hash))
+            transactionManager.handle(transactionStorage.getTransactions(listOf(hash)))
+        } else {
+            transactionStorage.deleteTransactions(listOf(hash))
+        }
+    }
+
+    private fun blockTransactions(blockNumber: Long): Single<ScannedBlock> {
+        return if (options.fullBlocks) {
+            blockchain.rpcSingle(GetBlockWithTransactionsJsonRpc(blockNumber)).flatMap { block ->
+                loggedTransactionHashes(blockNumber, block.logsBloom).map { hashes ->
+                    val transactions = block.transactions
+                        .filter { it.from == address || it.to == address || hashes.contains(it.hash.toRawHexString()) }
+                        .map { transaction(it, block.timestamp) }
+
+                    ScannedBlock(blockNumber, block.hash, transactions)
+                }
+            }
+        } else {
+            blockchain.getBlock(blockNumber).flatMap { block ->
+                loggedTransactionHashes(blockNumber, block.logsBloom).flatMap { hashes ->
+                    val requests = hashes.map { blockchain.getTransaction(it.hexStringToByteArray()) }
+
+                    Single.merge(requests).toList().map { rpcTransactions ->
+                        ScannedBlock(blockNumber, block.hash, rpcTransactions.map { transaction(it, block.timestamp) })
+                    }
+                }
+            }
+        }
+    }
+
+    private fun loggedTransactionHashes(blockNumber: Long, logsBloom: ByteArray?): Single<Set<String>> {
+        if (logsBloom != null && !LogsBloom(logsBloom).mayContainAny(watchedElements)) {
+            return Single.just(setOf())
+        }
+
+        val topicFilters = listOf(
+            listOf(null, addressTopic),
+            listOf(null, null, addressTopic),
+            listOf(null, null, null, addressTopic)
+        )
+        val requests = topicFilters.map { topics -> blockchain.getLogs(null, topics, blockNumber, blockNumber, false) }
+
+        return Single.merge(requests).toList().map { results ->
+            results.flatten().map { it.transactionHash.toRawHexString() }.toSet()
+        }
+    }
+
+    private fun transaction(rpcTransaction: RpcTransaction, timestamp: Long) =
+        Transaction(
+            hash = rpcTransaction.hash,
+            timestamp = timestamp,
+            isFailed = false,
+            blockNumber = rpcTransaction.blockNumber,
+            transactionIndex = rpcTransaction.transactionIndex?.toInt(),
+            from = rpcTransaction.from,
+            to = rpcTransaction.to,
+            value = rpcTransaction.value,
+            input = rpcTransaction.input,
+            nonce = rpcTransaction.nonce,
+            gasPrice = rpcTransaction.gasPrice,
+            maxFeePerGas = rpcTransaction.maxFeePerGas,
+            maxPriorityFeePerGas = rpcTransaction.maxPriorityFeePerGas,
+            gasLimit = rpcTransaction.gasLimit
+        )
+
+}
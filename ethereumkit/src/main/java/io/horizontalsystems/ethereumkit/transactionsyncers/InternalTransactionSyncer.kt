@@ -6,41 +6,59 @@ import io.horizontalsystems.ethereumkit.core.ITransactionSyncer
 import io.horizontalsystems.ethereumkit.models.InternalTransaction
 import io.horizontalsystems.ethereumkit.models.ProviderInternalTransaction
 import io.horizontalsystems.ethereumkit.models.Transaction
+import io.reactivex.Flowable
 import io.reactivex.Single
 
 class InternalTransactionSyncer(
         private val transactionProvider: ITransactionProvider,
-        private val storage: ITransactionStorage
+        private val storage: ITransactionStorage,
+        confirmationDepth: Long = 0
 ) : ITransactionSyncer {
 
+    private val reorgWindow = ReorgWindow(confirmationDepth)
+
     private fun handle(transactions: List<ProviderInternalTransaction>) {
         if (transactions.isEmpty()) return
 
-        val internalTransactions = transactions.map { tx ->
-            InternalTransaction(tx.hash, tx.blockNumber, tx.from, tx.to, tx.value)
-        }
-
-        storage.saveInternalTransactions(internalTransactions)
+        storage.saveInternalTransactions(internalTransactions(transactions))
     }
 
+    private fun internalTransactions(transactions: List<ProviderInternalTransaction>) =
+            transactions.map { tx ->
+                InternalTransaction(tx.hash, tx.blockNumber, tx.from, tx.to, tx.value)
+            }
+
     override fun getTransactionsSingle(): Single<Pair<List<Transaction>, Boolean>> {
         val lastTransactionBlockNumber = storage.getLastInternalTransaction()?.blockNumber ?: 0
         val initial = lastTransactionBlockNumber == 0L
 
         return transactionProvider.getInternalTransactions(lastTransactionBlockNumber + 1)
                 .doOnSuccess { providerInternalTransactions -> handle(providerInternalTransactions) }
-                .map { providerInternalTransactions ->
-                    val array = providerInternalTransactions.map { transaction ->
-                        Transaction(
-                                hash = transaction.hash,
-                                timestamp = transaction.timestamp,
-                                isFailed = false,
-                                blockNumber = transaction.blockNumber,
-                        )
-                    }
-                    Pair(array, initial)
+                .map { providerInternalTransactions -> Pair(transactions(providerInternalTransactions), initial) }
+    }
+
+    override fun getTransactionsFlowable(): Flowable<Pair<List<Transaction>, Boolean>> {
+        val lastTransactionBlockNumber = storage.getLastInternalTransaction()?.blockNumber ?: 0
+        val initial = lastTransactionBlockNumber == 0L
+
+        val startBlock = reorgWindow.startBlock(lastTransactionBlockNumber)
+        val pages = transactionProvider.getInternalTransactionsPages(startBlock)
+
+        return reorgWindow
+                .reconcile(startBlock, pages, { it.blockNumber }) { fromBlock, toBlock, providerInternalTransactions ->
+                    storage.replaceInternalTransactions(fromBlock, toBlock, internalTransactions(providerInternalTransactions))
                 }
-                .onErrorReturnItem(Pair(listOf(), initial))
+                .map { (providerInternalTransactions, _) -> Pair(transactions(providerInternalTransactions), initial) }
     }
 
+    private fun transactions(providerInternalTransactions: List<ProviderInternalTransaction>) =
+            providerInternalTransactions.map { transaction ->
+                Transaction(
+                        hash = transaction.hash,
+                        timestamp = transaction.timestamp,
+                        isFailed = false,
+                        blockNumber = transaction.blockNumber,
+                )
+            }
+
 }
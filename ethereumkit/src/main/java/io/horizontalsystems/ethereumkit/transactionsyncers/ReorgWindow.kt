@@ -0,0 +1,38 @@
+package io.horizontalsystems.ethereumkit.transactionsyncers
+
+import io.reactivex.Flowable
+import kotlin.math.max
+
+class ReorgWindow(private val confirmationDepth: Long) {
+
+    // The last confirmationDepth blocks up to and including the cursor are scanned again on every sync
+    fun startBlock(lastBlockNumber: Long): Long =
+        if (lastBlockNumber == 0L) 1 else max(lastBlockNumber - confirmationDepth, 0) + 1
+
+    // Pages must consist of complete blocks in ascending order. Each page covers the blocks from the end of the previous
+    // page up to its last block, and after the last page everything above it is covered. The replace callback receives
+    // every covered range with the rows received for it, so stored rows of reorganized blocks can be dropped or moved.
+    // Its result is emitted along with the page; the range covered after the last page is emitted with no rows.
+    fun <T, R> reconcile(
+        startBlock: Long,
+        pages: Flowable<List<T>>,
+        blockNumber: (T) -> Long,
+        replace: (fromBlock: Long, toBlock: Long?, rows: List<T>) -> R
+    ): Flowable<Pair<List<T>, R>> {
+        return Flowable.defer {
+            var fromBlock = startBlock
+
+            pages
+                .map { rows ->
+                    val toBlock = rows.maxOfOrNull(blockNumber) ?: (fromBlock - 1)
+                    val result = replace(fromBlock, toBlock, rows)
+                    fromBlock = toBlock + 1
+                    Pair(rows, result)
+                }
+                .concatWith(Flowable.fromCallable {
+                    Pair(listOf<T>(), replace(fromBlock, null, listOf()))
+                })
+        }
+    }
+
+}
@@ -6,23 +6,34 @@ import io.horizontalsystems.ethereumkit.core.TransactionManager
 import io.horizontalsystems.ethereumkit.models.Transaction
 import io.reactivex.BackpressureStrategy
 import io.reactivex.Flowable
-import io.reactivex.Single
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.disposables.CompositeDisposable
 import io.reactivex.schedulers.Schedulers
 import io.reactivex.subjects.PublishSubject
 import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.logging.Logger
 
 class TransactionSyncManager(
-        private val transactionManager: TransactionManager
+        private val transactionManager: TransactionManager,
+        private val maxConcurrency: Int = 3
 ) {
+
+    data class SyncerStatus(
+            val id: String,
+            val state: EthereumKit.SyncState,
+            val startedAt: Long? = null,
+            val duration: Long? = null
+    )
+
     private val logger = Logger.getLogger(this.javaClass.simpleName)
 
     private val disposables = CompositeDisposable()
 
-    private val stateSubject = PublishSubject.create<EthereumKit.SyncState>()
+    private val stateSubject = PublishSubject.create<EthereumKit.SyncState>().toSerialized()
     private val syncers = CopyOnWriteArrayList<ITransactionSyncer>()
+    private val statuses = mutableMapOf<String, SyncerStatus>()
+    private val statusesSubject = PublishSubject.create<List<SyncerStatus>>().toSerialized()
 
     var syncState: EthereumKit.SyncState = EthereumKit.SyncState.NotSynced(EthereumKit.SyncError.NotStarted())
         private set(value) {
@@ -31,6 +42,10 @@ class TransactionSyncManager(
         }
     val syncStateAsync: Flowable<EthereumKit.SyncState> = stateSubject.toFlowable(BackpressureStrategy.BUFFER)
 
+    val syncerStatuses: List<SyncerStatus>
+        get() = synchronized(statuses) { statuses.values.toList() }
+    val syncerStatusesAsync: Flowable<List<SyncerStatus>> = statusesSubject.toFlowable(BackpressureStrategy.BUFFER)
+
     fun add(syncer: ITransactionSyncer) {
         syncers.add(syncer)
     }
@@ -38,28 +53,58 @@ class TransactionSyncManager(
     fun sync() {
         if (syncState is EthereumKit.SyncState.Syncing) return
 
-        syncState = EthereumKit.SyncState.Syncing()
+        val syncers = syncers.toList()
+        val finished = AtomicInteger(0)
+        val errors = CopyOnWriteArrayList<Throwable>()
+
+        syncState = EthereumKit.SyncState.Syncing(0.0)
+
+        // Syncers run independently, at most maxConcurrency at a time. Their pages are handled as soon as they arrive,
+        // and a failing syncer only marks its own status as NotSynced
+        val sources = syncers.map { syncer ->
+            Flowable.defer {
+                val startedAt = System.currentTimeMillis()
+                setStatus(SyncerStatus(syncer.id, EthereumKit.SyncState.Syncing(), startedAt))
+
+                syncer.getTransactionsFlowable()
+                        .doOnNext { handle(it) }
+                        .ignoreElements()
+                        .doOnComplete {
+                            setStatus(SyncerStatus(syncer.id, EthereumKit.SyncState.Synced(), startedAt, System.currentTimeMillis() - startedAt))
+                        }
+                        .doOnError {
+                            errors.add(it)
+                            setStatus(SyncerStatus(syncer.id, EthereumKit.SyncState.NotSynced(it), startedAt, System.currentTimeMillis() - startedAt))
+                            logger.warning("${syncer.id} sync ERROR = ${it.message}")
+                        }
+                        .onErrorComplete()
+                        .doOnComplete {
+                            syncState = EthereumKit.SyncState.Syncing(finished.incrementAndGet().toDouble() / syncers.size)
+                        }
+                        .toFlowable<Unit>()
+            }.subscribeOn(Schedulers.io())
+        }
 
-        Single.zip(syncers.map {
-            it.getTransactionsSingle()
-        }) { array ->
-            array.map { it as Pair<List<Transaction>, Boolean> }
-                    .reduce { acc, list ->
-                        Pair(acc.first + list.first, acc.second && list.second)
+        Flowable.merge(sources, maxConcurrency)
+                .subscribe({}, {}, {
+                    syncState = if (syncers.isNotEmpty() && errors.size == syncers.size) {
+                        EthereumKit.SyncState.NotSynced(errors.first())
+                    } else {
+                        EthereumKit.SyncState.Synced()
                     }
-        }
-                .subscribeOn(Schedulers.io())
-                .subscribe({ transactions ->
-                    handle(transactions)
-                    syncState = EthereumKit.SyncState.Synced()
-                }, {
-                    syncState = EthereumKit.SyncState.NotSynced(it)
-                    logger.warning("sync ERROR = ${it.message}")
                 }).let {
                     disposables.add(it)
                 }
     }
 
+    private fun setStatus(status: SyncerStatus) {
+        val list = synchronized(statuses) {
+            statuses[status.id] = status
+            statuses.values.toList()
+        }
+        statusesSubject.onNext(list)
+    }
+
     private fun merge(tx1: Transaction, tx2: Transaction) =
             Transaction(
                     tx1.hash,
@@ -79,6 +124,7 @@ class TransactionSyncManager(
                     tx1.gasUsed ?: tx2.gasUsed
             )
 
+    @Synchronized
     private fun handle(result: Pair<List<Transaction>, Boolean>) {
         val transactions = result.first
         val initial = result.second
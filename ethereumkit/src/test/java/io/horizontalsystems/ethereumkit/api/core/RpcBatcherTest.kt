@@ -0,0 +1,44 @@
+package io.horizontalsystems.ethereumkit.api.core
+
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class RpcBatcherTest {
+
+    private fun request(id: Int) = RpcBatcher.Request(id, "{\"id\":$id}", RpcHandler({}, {}))
+
+    @Test
+    fun enqueue_flushesWhenMaxSizeReached() {
+        val latch = CountDownLatch(1)
+        val batches = mutableListOf<List<Int>>()
+        val batcher = RpcBatcher(BatchOptions(maxSize = 3, windowMillis = 60_000)) { requests ->
+            batches.add(requests.map { it.id })
+            latch.countDown()
+        }
+
+        (1..3).forEach { batcher.enqueue(request(it)) }
+
+        assert(latch.await(5, TimeUnit.SECONDS))
+        assert(batches == listOf(listOf(1, 2, 3)))
+    }
+
+    @Test
+    fun enqueue_flushesAfterWindow() {
+        val latch = CountDownLatch(1)
+        val batches = mutableListOf<List<Int>>()
+        val batcher = RpcBatcher(BatchOptions(maxSize = 10, windowMillis = 20)) { requests ->
+            batches.add(requests.map { it.id })
+            latch.countDown()
+        }
+
+        val cancelled = request(2)
+        batcher.enqueue(request(1))
+        batcher.enqueue(cancelled)
+        batcher.cancel(cancelled)
+
+        assert(latch.await(5, TimeUnit.SECONDS))
+        assert(batches == listOf(listOf(1)))
+    }
+
+}
@@ -0,0 +1,72 @@
+package io.horizontalsystems.ethereumkit.contracts
+
+import io.horizontalsystems.ethereumkit.core.hexStringToByteArray
+import io.horizontalsystems.ethereumkit.crypto.InternalBouncyCastleProvider
+import io.horizontalsystems.ethereumkit.models.Address
+import org.junit.Before
+import org.junit.Test
+import org.web3j.abi.FunctionEncoder
+import org.web3j.abi.datatypes.Bool
+import org.web3j.abi.datatypes.DynamicArray
+import org.web3j.abi.datatypes.DynamicBytes
+import org.web3j.abi.datatypes.DynamicStruct
+import org.web3j.abi.datatypes.Function
+import java.security.Security
+import org.web3j.abi.datatypes.Address as Web3jAddress
+
+class Multicall3MethodTest {
+
+    private val target1 = Address("0x6b175474e89094c44da98b954eedeac495271d0f")
+    private val target2 = Address("0xa0b86991c6218b36c1d19d4a2e9eb0ce3606eb48")
+
+    @Before
+    fun setup() {
+        Security.addProvider(InternalBouncyCastleProvider.getInstance())
+    }
+
+    @Test
+    fun encodedABI_matchesAbiEncoding() {
+        val data1 = "70a08231000000000000000000000000a0b86991c6218b36c1d19d4a2e9eb0ce3606eb48".hexStringToByteArray()
+        val data2 = "313ce567".hexStringToByteArray()
+
+        val method = Multicall3Method(listOf(Multicall3Method.Call(target1, data1), Multicall3Method.Call(target2, data2, allowFailure = false)))
+
+        val function = Function(
+            "aggregate3",
+            listOf(
+                DynamicArray(
+                    DynamicStruct::class.java,
+                    listOf(
+                        DynamicStruct(Web3jAddress(target1.hex), Bool(true), DynamicBytes(data1)),
+                        DynamicStruct(Web3jAddress(target2.hex), Bool(false), DynamicBytes(data2))
+                    )
+                )
+            ),
+            listOf()
+        )
+
+        assert(method.encodedABI().contentEquals(FunctionEncoder.encode(function).hexStringToByteArray()))
+    }
+
+    @Test
+    fun decodeResults() {
+        val encoded = FunctionEncoder.encodeConstructor(
+            listOf(
+                DynamicArray(
+                    DynamicStruct::class.java,
+                    listOf(
+                        DynamicStruct(Bool(true), DynamicBytes(ByteArray(32) { 1 })),
+                        DynamicStruct(Bool(false), DynamicBytes(byteArrayOf()))
+                    )
+                )
+            )
+        ).hexStringToByteArray()
+
+        val results = Multicall3Method.decodeResults(encoded)
+
+        assert(results.size == 2)
+        assert(results[0].success && results[0].returnData.contentEquals(ByteArray(32) { 1 }))
+        assert(!results[1].success && results[1].returnData.isEmpty())
+    }
+
+}
@@ -0,0 +1,82 @@
+package io.horizontalsystems.ethereumkit.contracts
+
+import io.horizontalsystems.ethereumkit.api.core.RpcResponse
+import io.horizontalsystems.ethereumkit.api.jsonrpc.JsonRpc
+import io.horizontalsystems.ethereumkit.core.hexStringToByteArray
+import io.horizontalsystems.ethereumkit.core.toHexString
+import io.horizontalsystems.ethereumkit.crypto.InternalBouncyCastleProvider
+import io.horizontalsystems.ethereumkit.models.Address
+import io.reactivex.Single
+import org.junit.Before
+import org.junit.Test
+import org.web3j.abi.FunctionEncoder
+import org.web3j.abi.datatypes.Bool
+import org.web3j.abi.datatypes.DynamicArray
+import org.web3j.abi.datatypes.DynamicBytes
+import org.web3j.abi.datatypes.DynamicStruct
+import java.security.Security
+import java.util.concurrent.TimeUnit
+
+class Multicall3Test {
+
+    private val multicallAddress = Address("0xca11bde05977b3631167028862be2a173976ca11")
+    private val target = Address("0x6b175474e89094c44da98b954eedeac495271d0f")
+    private val revertData = "08c379a0".hexStringToByteArray()
+
+    @Before
+    fun setup() {
+        Security.addProvider(InternalBouncyCastleProvider.getInstance())
+    }
+
+    @Test
+    fun isSenderIndependent_onlyKnownViews() {
+        assert(Multicall3.isSenderIndependent("70a08231000000000000000000000000a0b86991c6218b36c1d19d4a2e9eb0ce3606eb48".hexStringToByteArray()))
+        assert(Multicall3.isSenderIndependent("0902f1ac".hexStringToByteArray()))
+        assert(!Multicall3.isSenderIndependent("c6a5026a".hexStringToByteArray()))
+        assert(!Multicall3.isSenderIndependent(byteArrayOf(0x70)))
+    }
+
+    @Test
+    fun call_failedInAggregate_retriedAsPlainCall() {
+        val multicall = Multicall3(multicallAddress, { contractAddress, data ->
+            if (contractAddress == multicallAddress) {
+                Single.just(aggregateResponse(true to byteArrayOf(1), false to byteArrayOf()))
+            } else {
+                Single.just(data)
+            }
+        })
+
+        val first = multicall.call(target, byteArrayOf(10)).test()
+        val second = multicall.call(target, byteArrayOf(20)).test()
+
+        assert(first.awaitDone(5, TimeUnit.SECONDS).values().single().contentEquals(byteArrayOf(1)))
+        assert(second.awaitDone(5, TimeUnit.SECONDS).values().single().contentEquals(byteArrayOf(20)))
+    }
+
+    @Test
+    fun call_failedInPlainCall_keepsRevertData() {
+        val multicall = Multicall3(multicallAddress, { contractAddress, _ ->
+            if (contractAddress == multicallAddress) {
+                Single.just(aggregateResponse(true to byteArrayOf(1), false to revertData))
+            } else {
+                Single.error(JsonRpc.ResponseError.RpcError(RpcResponse.Error(3, "execution reverted")))
+            }
+        })
+
+        multicall.call(target, byteArrayOf(10)).subscribe({}, {})
+        val error = multicall.call(target, byteArrayOf(20)).test().awaitDone(5, TimeUnit.SECONDS).errors().firstOrNull()
+
+        assert(error is JsonRpc.ResponseError.RpcError && error.error.data?.asString == revertData.toHexString())
+    }
+
+    private fun aggregateResponse(vararg results: Pair<Boolean, ByteArray>): ByteArray =
+        FunctionEncoder.encodeConstructor(
+            listOf(
+                DynamicArray(
+                    DynamicStruct::class.java,
+                    results.map { (success, data) -> DynamicStruct(Bool(success), DynamicBytes(data)) }
+                )
+            )
+        ).hexStringToByteArray()
+
+}
@@ -0,0 +1,35 @@
+package io.horizontalsystems.ethereumkit.core
+
+import io.horizontalsystems.ethereumkit.api.models.EtherscanResponse
+import io.reactivex.Single
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class EtherscanTransactionProviderTest {
+
+    @Test
+    fun pages_blockAboveResultWindow_emittedAfterMaxPages() {
+        val requests = mutableListOf<Triple<Long, Long?, Int>>()
+
+        // Block 5 holds 12000 rows, pages above the 10000 rows window are rejected like Etherscan does
+        val pages = EtherscanTransactionProvider.pages<Long>(1, { it }) { from, endBlock, page ->
+            requests.add(Triple(from, endBlock, page))
+
+            when {
+                page * 1000 > 10_000 -> Single.error(Exception("Result window is too large"))
+                from <= 5 -> Single.just(response(List(1000) { 5L }))
+                else -> Single.just(response(listOf()))
+            }
+        }
+
+        val emitted = pages.test().awaitDone(5, TimeUnit.SECONDS)
+
+        emitted.assertNoErrors()
+        assert(emitted.values().map { it.size } == listOf(10_000))
+        assert(requests.last() == Triple(6L, null, 1))
+    }
+
+    private fun response(rows: List<Long>) =
+        EtherscanResponse("1", "OK", rows, rows.size, rows.firstOrNull(), rows.lastOrNull())
+
+}
@@ -14,4 +14,18 @@ class ExtensionsKtTest {
         assert(testString2.removeLeadingZeros() == "F4545")
         assert(testString3.removeLeadingZeros() == "F454500")
     }
-}
\ No newline at end of file
+
+    @Test
+    fun hexStringToByteArray() {
+        assert("0x0aff".hexStringToByteArray().contentEquals(byteArrayOf(0x0a, 0xff.toByte())))
+        assert("AFF".hexStringToByteArray().contentEquals(byteArrayOf(0x0a, 0xff.toByte())))
+        assert("0x".hexStringToByteArray().isEmpty())
+        assert("0xzz".hexStringToByteArrayOrNull() == null)
+    }
+
+    @Test
+    fun toRawHexString() {
+        assert(byteArrayOf(0x00, 0x0a, 0xff.toByte()).toRawHexString() == "000aff")
+        assert(null.toRawHexString() == "")
+    }
+}
@@ -0,0 +1,43 @@
+package io.horizontalsystems.ethereumkit.core
+
+import io.horizontalsystems.ethereumkit.models.Transaction
+import org.junit.Test
+
+class PendingTransactionIndexTest {
+
+    private fun transaction(id: Int, nonce: Long?, blockNumber: Long? = null, isFailed: Boolean = false) =
+        Transaction(hash = ByteArray(32) { id.toByte() }, timestamp = 0, isFailed = isFailed, blockNumber = blockNumber, nonce = nonce)
+
+    @Test
+    fun update_tracksPendingState() {
+        val index = PendingTransactionIndex(listOf(transaction(1, 5)))
+
+        assert(!index.update(transaction(1, 5)))
+        assert(index.update(transaction(2, 5)))
+        assert(index.pendingTransactions(5).size == 2)
+
+        assert(!index.update(transaction(1, 5, blockNumber = 100)))
+        assert(!index.update(transaction(2, 5, isFailed = true)))
+        assert(index.pendingTransactions(5).isEmpty())
+        assert(index.isEmpty)
+    }
+
+    @Test
+    fun update_ignoresTransactionsWithoutNonce() {
+        val index = PendingTransactionIndex(listOf())
+
+        assert(!index.update(transaction(1, null)))
+        assert(index.isEmpty)
+    }
+
+    @Test
+    fun remove() {
+        val index = PendingTransactionIndex(listOf(transaction(1, 5), transaction(2, 5), transaction(3, 6)))
+
+        index.remove(transaction(2, 5).hashString)
+
+        assert(index.pendingTransactions(5).map { it.hashString } == listOf(transaction(1, 5).hashString))
+        assert(index.pendingTransactions(6).size == 1)
+    }
+
+}
@@ -0,0 +1,64 @@
+package io.horizontalsystems.ethereumkit.core
+
+import io.horizontalsystems.ethereumkit.contracts.ContractEvent
+import io.horizontalsystems.ethereumkit.crypto.InternalBouncyCastleProvider
+import io.horizontalsystems.ethereumkit.models.Address
+import io.horizontalsystems.ethereumkit.models.TransactionLog
+import org.junit.Before
+import org.junit.Test
+import java.math.BigInteger
+import java.security.Security
+
+class RpcLogTransactionProviderTest {
+
+    private val contract = Address("0x2222222222222222222222222222222222222222")
+    private val from = Address("0x3333333333333333333333333333333333333333")
+    private val to = Address("0x1111111111111111111111111111111111111111")
+
+    @Before
+    fun setup() {
+        Security.addProvider(InternalBouncyCastleProvider.getInstance())
+    }
+
+    @Test
+    fun eip1155Transactions_skipsValuesAboveIntRange() {
+        val signature = ContractEvent(
+            "TransferBatch",
+            listOf(
+                ContractEvent.Argument.Address,
+                ContractEvent.Argument.Address,
+                ContractEvent.Argument.Address,
+                ContractEvent.Argument.Uint256Array,
+                ContractEvent.Argument.Uint256Array
+            )
+        ).signature
+        val data = listOf(0x40, 0xa0, 2, 1, 2, 2, 5).map { BigInteger.valueOf(it.toLong()) }
+            .plus(BigInteger.ONE.shiftLeft(31))
+            .map { word(it) }
+            .reduce { acc, bytes -> acc + bytes }
+
+        val log = TransactionLog(
+            transactionHash = ByteArray(32) { 7 },
+            transactionIndex = 0,
+            logIndex = 0,
+            address = contract,
+            blockHash = ByteArray(32),
+            blockNumber = 100,
+            data = data,
+            removed = false,
+            topics = listOf(signature, word(BigInteger.ZERO), ByteArray(12) + from.raw, ByteArray(12) + to.raw).map { it.toHexString() }
+        )
+
+        val transactions = RpcLogTransactionProvider.eip1155Transactions(log)
+
+        assert(transactions.size == 1)
+        assert(transactions[0].tokenId == BigInteger.ONE && transactions[0].tokenValue == 5)
+        assert(transactions[0].from == from && transactions[0].to == to)
+    }
+
+    private fun word(value: BigInteger): ByteArray {
+        val bytes = value.toByteArray().dropWhile { it == 0.toByte() }.toByteArray()
+        return ByteArray(32 - bytes.size) + bytes
+    }
+
+}
@@ -0,0 +1,144 @@
+package io.horizontalsystems.ethereumkit.core
+
+import io.horizontalsystems.ethereumkit.decorations.DecorationManager
+import io.horizontalsystems.ethereumkit.models.Address
+import io.horizontalsystems.ethereumkit.models.FullTransaction
+import io.horizontalsystems.ethereumkit.models.InternalTransaction
+import io.horizontalsystems.ethereumkit.models.ScannedTransaction
+import io.horizontalsystems.ethereumkit.models.Transaction
+import io.horizontalsystems.ethereumkit.models.TransactionCursor
+import io.reactivex.Single
+import org.junit.Test
+import java.lang.reflect.Proxy
+import java.math.BigInteger
+
+class TransactionManagerTest {
+
+    private val address = Address("0x1111111111111111111111111111111111111111")
+    private val contract = Address("0x2222222222222222222222222222222222222222")
+    private val hash = ByteArray(32) { 7 }
+
+    // Row of the Ethereum syncer
+    private val ethereumTransaction = Transaction(
+        hash = hash, timestamp = 100, isFailed = false, blockNumber = 10, transactionIndex = 1,
+        from = address, to = contract, value = BigInteger.ZERO, input = byteArrayOf(1, 2, 3, 4), nonce = 5
+    )
+
+    // Row of the Erc20 syncer for the same transaction, without from, to, value and input
+    private val erc20Transaction = Transaction(hash = hash, timestamp = 100, isFailed = false, blockNumber = 10, transactionIndex = 1)
+
+    @Test
+    fun handle_erc20PageFirst() {
+        val emitted = handle(listOf(erc20Transaction), listOf(ethereumTransaction))
+
+        assert(emitted.size == 2)
+        assert(isComplete(emitted.last()))
+    }
+
+    @Test
+    fun handle_ethereumPageFirst() {
+        val emitted = handle(listOf(ethereumTransaction), listOf(erc20Transaction))
+
+        assert(emitted.size == 2)
+        assert(emitted.all { isComplete(it) })
+    }
+
+    @Test
+    fun handle_pendingFailedOnlyByMinedTransactionWithSameNonce() {
+        val storage = MemoryTransactionStorage()
+        val manager = TransactionManager(address, storage, DecorationManager(address, storage), unused(), unused())
+        val pendingTransaction = Transaction(hash = ByteArray(32) { 8 }, timestamp = 90, isFailed = false, from = address, to = contract, value = BigInteger.ONE, input = byteArrayOf(), nonce = 5)
+
+        manager.handle(listOf(pendingTransaction))
+        assert(manager.getPendingTransactions().map { it.hashString } == listOf(pendingTransaction.hashString))
+
+        manager.handle(listOf(ethereumTransaction))
+
+        assert(manager.getPendingTransactions().isEmpty())
+        assert(storage.getTransaction(pendingTransaction.hash)?.isFailed == true)
+    }
+
+    private fun handle(vararg pages: List<Transaction>): List<FullTransaction> {
+        val storage = MemoryTransactionStorage()
+        val manager = TransactionManager(address, storage, DecorationManager(address, storage), unused(), unused())
+        val emitted = mutableListOf<FullTransaction>()
+        val disposable = manager.fullTransactionsAsync.subscribe { (fullTransactions, _) -> emitted.addAll(fullTransactions) }
+
+        pages.forEach { manager.handle(it) }
+        disposable.dispose()
+
+        return emitted
+    }
+
+    private fun isComplete(fullTransaction: FullTransaction): Boolean {
+        val transaction = fullTransaction.transaction
+        return transaction.from == address && transaction.to == contract && transaction.value != null && transaction.input != null
+    }
+
+    private inline fun <reified T> unused(): T =
+        Proxy.newProxyInstance(T::class.java.classLoader, arrayOf(T::class.java)) { _, method, _ ->
+            throw UnsupportedOperationException(method.name)
+        } as T
+
+    private class MemoryTransactionStorage : ITransactionStorage {
+        private val transactions = mutableMapOf<String, Transaction>()
+
+        override fun getTransactions(hashes: List<ByteArray>) = hashes.mapNotNull { transactions[it.toRawHexString()] }
+        override fun getTransaction(hash: ByteArray) = transactions[hash.toRawHexString()]
+
+        override fun save(transactions: List<Transaction>) {
+            transactions.forEach { this.transactions[it.hash.toRawHexString()] = it }
+        }
+
+        override fun merge(transactions: List<Transaction>) {
+            transactions.forEach { new ->
+                val key = new.hash.toRawHexString()
+                val old = this.transactions[key]
+
+                this.transactions[key] = if (old == null) new else new.copy(
+                    isFailed = old.isFailed || new.isFailed,
+                    blockNumber = new.blockNumber ?: old.blockNumber,
+                    transactionIndex = new.transactionIndex ?: old.transactionIndex,
+                    from = new.from ?: old.from,
+                    to = new.to ?: old.to,
+                    value = new.value ?: old.value,
+                    input = new.input ?: old.input,
+                    nonce = new.nonce ?: old.nonce,
+                    gasPrice = new.gasPrice ?: old.gasPrice,
+                    maxFeePerGas = new.maxFeePerGas ?: old.maxFeePerGas,
+                    maxPriorityFeePerGas = new.maxPriorityFeePerGas ?: old.maxPriorityFeePerGas,
+                    gasLimit = new.gasLimit ?: old.gasLimit,
+                    gasUsed = new.gasUsed ?: old.gasUsed,
+                    replacedWith = new.replacedWith ?: old.replacedWith
+                )
+            }
+        }
+
+        override fun getPendingTransactions() = transactions.values.filter { it.blockNumber == null && !it.isFailed }
+        override fun getPendingTransactions(tags: List<List<String>>) = getPendingTransactions()
+        override fun getNonPendingTransactionsByNonces(from: Address, pendingTransactionNonces: List<Long>) =
+            transactions.values.filter { it.blockNumber != null && it.from == from && it.nonce in pendingTransactionNonces }
+
+        override fun getTransactionsBeforeAsync(tags: List<List<String>>, hash: ByteArray?, limit: Int?) = Single.just(listOf<Transaction>())
+        override fun getTransactionsBeforeCursorAsync(tags: List<List<String>>, cursor: TransactionCursor?, limit: Int?) = Single.just(listOf<Transaction>())
+        override fun getTransactionsAfterSingle(hash: ByteArray?) = Single.just(listOf<Transaction>())
+        override fun getTransactionsAfterCursorSingle(cursor: TransactionCursor?) = Single.just(listOf<Transaction>())
+        override fun getTransactionsInBlockRange(address: Address, fromBlock: Long, toBlock: Long?) = listOf<Transaction>()
+        override fun setPending(hashes: List<ByteArray>) = Unit
+        override fun deleteTransactions(hashes: List<ByteArray>) = Unit
+
+        override fun saveScannedTransactions(scannedTransactions: List<ScannedTransaction>) = Unit
+        override fun getScannedTransactions(toBlock: Long) = listOf<ScannedTransaction>()
+        override fun deleteScannedTransactions(hashes: List<ByteArray>) = Unit
+
+        override fun getLastInternalTransaction(): InternalTransaction? = null
+        override fun getInternalTransactions() = listOf<InternalTransaction>()
+        override fun getInternalTransactionsByHashes(hashes: List<ByteArray>) = listOf<InternalTransaction>()
+        override fun saveInternalTransactions(internalTransactions: List<InternalTransaction>) = Unit
+        override fun replaceInternalTransactions(fromBlock: Long, toBlock: Long?, internalTransactions: List<InternalTransaction>) = Unit
+
+        override fun saveTags(tags: List<Pair<String, ByteArray>>) = Unit
+        override fun getDistinctTokenContractAddresses() = listOf<String>()
+    }
+
+}
@@ -0,0 +1,60 @@
+package io.horizontalsystems.ethereumkit.models
+
+import io.horizontalsystems.ethereumkit.core.hexStringToByteArray
+import io.horizontalsystems.ethereumkit.crypto.CryptoUtils
+import io.horizontalsystems.ethereumkit.crypto.InternalBouncyCastleProvider
+import org.junit.Before
+import org.junit.Test
+import java.security.Security
+
+class LogsBloomTest {
+
+    private val contract = Address("0xdac17f958d2ee523a2206206994597c13d831ec7")
+    private val user = Address("0x4b20993bc481177ec7e8f571cecae8a9e22c02db")
+    private val other = Address("0x78731d3ca6b7e34ac0f824c42a7cc18a495cabab")
+
+    @Before
+    fun setup() {
+        Security.addProvider(InternalBouncyCastleProvider.getInstance())
+    }
+
+    @Test
+    fun mayContain() {
+        val bloom = LogsBloom(bloomHex(contract.raw, ByteArray(12) + user.raw).hexStringToByteArray())
+
+        assert(bloom.mayContain(BloomElement.contractAddress(contract)))
+        assert(bloom.mayContain(BloomElement.addressTopic(user)))
+        assert(!bloom.mayContain(BloomElement.addressTopic(other)))
+        assert(bloom.mayContainAny(listOf(BloomElement.addressTopic(other), BloomElement.addressTopic(user))))
+        assert(!bloom.mayContainAny(listOf(BloomElement.addressTopic(other))))
+    }
+
+    @Test
+    fun mayContain_unexpectedSize() {
+        assert(LogsBloom(ByteArray(8)).mayContain(BloomElement.addressTopic(other)))
+    }
+
+    @Test
+    fun bloomFilter() {
+        val bloomFilter = BloomFilter("0x" + bloomHex(ByteArray(12) + user.raw))
+
+        assert(bloomFilter.mayContainUserAddress(user))
+        assert(!bloomFilter.mayContainContractAddress(contract))
+    }
+
+    // Sets the bits of the elements in the hex representation, bit 0 being the lowest bit of the last character
+    private fun bloomHex(vararg elements: ByteArray): String {
+        val nibbles = IntArray(512)
+
+        for (element in elements) {
+            val hash = CryptoUtils.sha3(element)
+            for (i in 0..2) {
+                val bitPosition = (((hash[i * 2].toInt() and 0xff) shl 8) + (hash[i * 2 + 1].toInt() and 0xff)) and 2047
+                nibbles[511 - bitPosition / 4] = nibbles[511 - bitPosition / 4] or (1 shl (bitPosition % 4))
+            }
+        }
+
+        return nibbles.joinToString("") { Integer.toHexString(it) }
+    }
+
+}
@@ -0,0 +1,43 @@
+package io.horizontalsystems.ethereumkit.models
+
+import io.horizontalsystems.ethereumkit.models.TransactionTagName.Direction
+import io.horizontalsystems.ethereumkit.models.TransactionTagName.Kind
+import org.junit.Test
+
+class TransactionTagNameTest {
+
+    private val contract = "0xdac17f958d2ee523a2206206994597c13d831ec7"
+
+    @Test
+    fun from_tokenTags() {
+        val incoming = TransactionTagName.from(TransactionTag.tokenIncoming(contract))
+        val outgoing = TransactionTagName.from(TransactionTag.tokenOutgoing(contract))
+
+        assert(incoming.kind == Kind.Token && incoming.address == contract && incoming.direction == Direction.Incoming)
+        assert(outgoing.kind == Kind.Token && outgoing.address == contract && outgoing.direction == Direction.Outgoing)
+    }
+
+    @Test
+    fun from_directionalTagsKeepPrefix() {
+        val tagName = TransactionTagName.from(TransactionTag.tokenIncoming("token"))
+
+        assert(tagName.address == "token" && tagName.direction == Direction.Incoming)
+    }
+
+    @Test
+    fun from_coinAndAddressTags() {
+        assert(TransactionTagName.from(TransactionTag.EVM_COIN).kind == Kind.Coin)
+        assert(TransactionTagName.from(TransactionTag.EVM_COIN_OUTGOING).let { it.kind == Kind.Coin && it.direction == Direction.Outgoing })
+        assert(TransactionTagName.from(TransactionTag.fromAddress(contract)).let { it.kind == Kind.From && it.address == contract })
+        assert(TransactionTagName.from(TransactionTag.toAddress(contract)).let { it.kind == Kind.To && it.address == contract })
+    }
+
+    @Test
+    fun from_otherTags() {
+        listOf(TransactionTag.INCOMING, TransactionTag.OUTGOING, TransactionTag.SWAP, TransactionTag.EIP20_TRANSFER).forEach {
+            val tagName = TransactionTagName.from(it)
+            assert(tagName.kind == Kind.Other && tagName.address == null && tagName.direction == null)
+        }
+    }
+
+}
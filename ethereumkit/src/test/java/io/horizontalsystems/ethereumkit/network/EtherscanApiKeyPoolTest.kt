@@ -0,0 +1,36 @@
+package io.horizontalsystems.ethereumkit.network
+
+import org.junit.After
+import org.junit.Test
+import java.util.concurrent.TimeUnit
+
+class EtherscanApiKeyPoolTest {
+
+    @After
+    fun tearDown() {
+        EtherscanApiKeyPool.configure(EtherscanApiKeyPool.Options())
+    }
+
+    @Test
+    fun configure_appliesToSharedPool() {
+        val pool = EtherscanApiKeyPool.shared(listOf("configure_key"))
+
+        EtherscanApiKeyPool.configure(EtherscanApiKeyPool.Options(requestsPerSecond = 1.0))
+
+        assert(pool.statuses().single().availableRequests <= 1.0)
+    }
+
+    @Test
+    fun lease_disposedWaiterDoesNotConsumeRequest() {
+        val pool = EtherscanApiKeyPool(listOf("key"), EtherscanApiKeyPool.Options(requestsPerSecond = 1.0))
+
+        pool.lease().blockingGet()
+        val waiter = pool.lease().test()
+        waiter.dispose()
+
+        Thread.sleep(1_100)
+
+        assert(pool.lease().test().awaitDone(1, TimeUnit.SECONDS).values() == listOf("key"))
+    }
+
+}
@@ -0,0 +1,56 @@
+package io.horizontalsystems.ethereumkit.network
+
+import com.google.gson.stream.JsonReader
+import io.horizontalsystems.ethereumkit.models.Address
+import org.junit.Test
+import java.io.StringReader
+import java.math.BigInteger
+
+class EtherscanRowDecodersTest {
+
+    private val transactionRow = """
+        {"blockNumber":"14923678","timeStamp":"1654646411","hash":"0xc52783ad354aecc04c670047754f062e3d6d04e8f5b24774472651f9c3882c60",
+        "nonce":"1","blockHash":"0x7e1638fd2c6bdd05ffd83c1cf06c63e2f67d0f802084bef076d06bdcf86d1bb0","transactionIndex":"61",
+        "from":"0x9aa99c23f67c81701c772b106b4f83f6e858dd2e","to":"0x5f4ec3df9cbd43714fe2740f5e3616155c5b8419","value":"1000",
+        "gas":"21000","gasPrice":"14298499511","isError":"0","txreceipt_status":"1","input":"0x","contractAddress":"",
+        "cumulativeGasUsed":"4127881","gasUsed":"21000","confirmations":"100","methodId":"0x","functionName":""}
+    """.trimIndent()
+
+    @Test
+    fun decode_transaction() {
+        val transaction = ProviderTransactionDecoder().decode(JsonReader(StringReader(transactionRow)))
+
+        assert(transaction != null)
+        assert(transaction!!.blockNumber == 14923678L)
+        assert(transaction.from == Address("0x9aa99c23f67c81701c772b106b4f83f6e858dd2e"))
+        assert(transaction.value == BigInteger.valueOf(1000))
+        assert(transaction.input.isEmpty())
+        assert(transaction.txReceiptStatus == 1)
+    }
+
+    @Test
+    fun decode_skipsInvalidRowAndKeepsReaderPosition() {
+        val reader = JsonReader(StringReader("""[{"blockNumber":"1","hash":null,"extra":{"a":[1,2]}}, "oops", $transactionRow]"""))
+        val decoder = ProviderTransactionDecoder()
+
+        reader.beginArray()
+        val rows = listOf(decoder.decode(reader), decoder.decode(reader), decoder.decode(reader))
+        reader.endArray()
+
+        assert(rows[0] == null)
+        assert(rows[1] == null)
+        assert(rows[2]?.transactionIndex == 61)
+    }
+
+    @Test
+    fun decode_keepsBlockNumberOfInvalidRow() {
+        val decoder = ProviderTransactionDecoder()
+
+        assert(decoder.decode(JsonReader(StringReader("""{"blockNumber":"14923679","hash":null}"""))) == null)
+        assert(decoder.rowBlockNumber == 14923679L)
+
+        decoder.decode(JsonReader(StringReader("\"oops\"")))
+        assert(decoder.rowBlockNumber == null)
+    }
+
+}
@@ -4,26 +4,38 @@ import io.horizontalsystems.ethereumkit.core.ITransactionProvider
 import io.horizontalsystems.ethereumkit.core.ITransactionSyncer
 import io.horizontalsystems.ethereumkit.models.ProviderEip1155Transaction
 import io.horizontalsystems.ethereumkit.models.Transaction
+import io.horizontalsystems.ethereumkit.transactionsyncers.ReorgWindow
 import io.horizontalsystems.nftkit.models.Eip1155Event
 import io.horizontalsystems.nftkit.models.Nft
 import io.horizontalsystems.nftkit.models.NftType
+import io.reactivex.Flowable
 import io.reactivex.Single
 
 class Eip1155TransactionSyncer(
     private val transactionProvider: ITransactionProvider,
-    private val storage: Storage
+    private val storage: Storage,
+    confirmationDepth: Long = 0
 ) : ITransactionSyncer {
 
+    private val reorgWindow = ReorgWindow(confirmationDepth)
+
     var listener: ITransactionSyncerListener? = null
 
     private fun handle(transactions: List<ProviderEip1155Transaction>) {
         if (transactions.isEmpty()) return
 
-        val events = transactions.map { tx ->
+        val events = events(transactions)
+        storage.saveEip1155Events(events)
+        notify(events)
+    }
+
+    private fun events(transactions: List<ProviderEip1155Transaction>) =
+        transactions.map { tx ->
             Eip1155Event(tx.hash, tx.blockNumber, tx.contractAddress, tx.from, tx.to, tx.tokenId, tx.tokenValue, tx.tokenName, tx.tokenSymbol)
         }
 
-        storage.saveEip1155Events(events)
+    private fun notify(events: List<Eip1155Event>) {
+        if (events.isEmpty()) return
 
         val nfts = events.map { event ->
             Nft(
@@ -43,23 +55,37 @@ class Eip1155TransactionSyncer(
 
         return transactionProvider.getEip1155Transactions(lastTransactionBlockNumber + 1)
             .doOnSuccess { providerTokenTransactions -> handle(providerTokenTransactions) }
-            .map { providerTokenTransactions ->
-                val array = providerTokenTransactions.map { transaction ->
-                    Transaction(
-                        hash = transaction.hash,
-                        timestamp = transaction.timestamp,
-                        isFailed = false,
-                        blockNumber = transaction.blockNumber,
-                        transactionIndex = transaction.transactionIndex,
-                        nonce = transaction.nonce,
-                        gasPrice = transaction.gasPrice,
-                        gasLimit = transaction.gasLimit,
-                        gasUsed = transaction.gasUsed
-                    )
-
-                }
-                Pair(array, initial)
+            .map { providerTokenTransactions -> Pair(transactions(providerTokenTransactions), initial) }
+    }
+
+    override fun getTransactionsFlowable(): Flowable<Pair<List<Transaction>, Boolean>> {
+        val lastTransactionBlockNumber = storage.lastEip1155Event()?.blockNumber ?: 0
+        val initial: Boolean = lastTransactionBlockNumber == 0L
+
+        val startBlock = reorgWindow.startBlock(lastTransactionBlockNumber)
+        val pages = transactionProvider.getEip1155TransactionsPages(startBlock)
+
+        return reorgWindow
+            .reconcile(startBlock, pages, { it.blockNumber }) { fromBlock, toBlock, providerTokenTransactions ->
+                val events = events(providerTokenTransactions)
+                storage.replaceEip1155Events(fromBlock, toBlock, events)
+                notify(events)
             }
-            .onErrorReturnItem(Pair(listOf(), initial))
+            .map { (providerTokenTransactions, _) -> Pair(transactions(providerTokenTransactions), initial) }
     }
+
+    private fun transactions(providerTokenTransactions: List<ProviderEip1155Transaction>) =
+        providerTokenTransactions.map { transaction ->
+            Transaction(
+                hash = transaction.hash,
+                timestamp = transaction.timestamp,
+                isFailed = false,
+                blockNumber = transaction.blockNumber,
+                transactionIndex = transaction.transactionIndex,
+                nonce = transaction.nonce,
+                gasPrice = transaction.gasPrice,
+                gasLimit = transaction.gasLimit,
+                gasUsed = transaction.gasUsed
+            )
+        }
 }
\ No newline at end of file
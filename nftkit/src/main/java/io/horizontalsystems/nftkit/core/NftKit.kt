@@ -76,14 +76,14 @@ class NftKit(
     }
 
     fun addEip1155TransactionSyncer() {
-        val eip1155Syncer = Eip1155TransactionSyncer(evmKit.transactionProvider, storage)
+        val eip1155Syncer = Eip1155TransactionSyncer(evmKit.transactionProvider, storage, evmKit.chain.confirmationDepth)
         eip1155Syncer.listener = this
 
         evmKit.addTransactionSyncer(eip1155Syncer)
     }
 
     fun addEip721TransactionSyncer() {
-        val eip721Syncer = Eip721TransactionSyncer(evmKit.transactionProvider, storage)
+        val eip721Syncer = Eip721TransactionSyncer(evmKit.transactionProvider, storage, evmKit.chain.confirmationDepth)
         eip721Syncer.listener = this
 
         evmKit.addTransactionSyncer(eip721Syncer)
@@ -6,7 +6,7 @@ import io.horizontalsystems.nftkit.models.*
 import java.math.BigInteger
 
 class Storage(
-    database: NftKitDatabase
+    private val database: NftKitDatabase
 ) {
     private val eip721EventDao = database.eip721EventDao()
     private val eip1155EventDao = database.eip1155EventDao()
@@ -45,6 +45,12 @@ class Storage(
     fun saveEip721Events(events: List<Eip721Event>) =
         eip721EventDao.insertAll(events)
 
+    fun replaceEip721Events(fromBlock: Long, toBlock: Long?, events: List<Eip721Event>) =
+        database.runInTransaction {
+            eip721EventDao.delete(fromBlock, toBlock)
+            eip721EventDao.insertAll(events)
+        }
+
     fun lastEip1155Event(): Eip1155Event? =
         eip1155EventDao.lastEvent()
 
@@ -56,4 +62,10 @@ class Storage(
 
     fun saveEip1155Events(events: List<Eip1155Event>) =
         eip1155EventDao.insertAll(events)
+
+    fun replaceEip1155Events(fromBlock: Long, toBlock: Long?, events: List<Eip1155Event>) =
+        database.runInTransaction {
+            eip1155EventDao.delete(fromBlock, toBlock)
+            eip1155EventDao.insertAll(events)
+        }
 }
\ No newline at end of file
@@ -18,6 +18,9 @@ interface Eip1155EventDao {
     @Query("SELECT * FROM Eip1155Event WHERE hash IN (:hashes)")
     fun eventsByHash(hashes: List<ByteArray>): List<Eip1155Event>
 
+    @Query("DELETE FROM Eip1155Event WHERE blockNumber >= :fromBlock AND (:toBlock IS NULL OR blockNumber <= :toBlock)")
+    fun delete(fromBlock: Long, toBlock: Long?)
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     fun insertAll(list: List<Eip1155Event>)
 }
\ No newline at end of file
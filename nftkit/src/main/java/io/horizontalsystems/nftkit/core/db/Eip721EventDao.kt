@@ -18,6 +18,9 @@ interface Eip721EventDao {
     @Query("SELECT * FROM Eip721Event WHERE hash IN (:hashes)")
     fun eventsByHash(hashes: List<ByteArray>): List<Eip721Event>
 
+    @Query("DELETE FROM Eip721Event WHERE blockNumber >= :fromBlock AND (:toBlock IS NULL OR blockNumber <= :toBlock)")
+    fun delete(fromBlock: Long, toBlock: Long?)
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     fun insertAll(list: List<Eip721Event>)
 }
\ No newline at end of file
@@ -7,7 +7,6 @@ import io.horizontalsystems.ethereumkit.models.GasPrice
 import io.horizontalsystems.ethereumkit.network.*
 import io.reactivex.Single
 import okhttp3.Interceptor
-import okhttp3.OkHttpClient
 import okhttp3.logging.HttpLoggingInterceptor
 import retrofit2.Retrofit
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory
@@ -37,7 +36,7 @@ class OneInchService(
             interceptorChain.proceed(requestBuilder.build())
         }
 
-        val httpClient = OkHttpClient.Builder()
+        val httpClient = HttpClientRegistry.newBuilder()
             .addInterceptor(headersInterceptor)
             .addInterceptor(loggingInterceptor)
 
@@ -40,7 +40,7 @@ class TradeManager {
 
         logger.info("pairAddress: ${pairAddress.hex}")
 
-        return EthereumKit.call(rpcSource, pairAddress, GetReservesMethod().encodedABI())
+        return EthereumKit.call(rpcSource, pairAddress, GetReservesMethod().encodedABI(), chain = chain)
                 .map { data ->
                     logger.info("getReserves data: ${data.toHexString()}")
 
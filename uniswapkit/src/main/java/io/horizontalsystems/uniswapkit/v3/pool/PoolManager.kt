@@ -41,7 +41,7 @@ class PoolManager(
     // get price of tokenA in tokenB
     suspend fun getPoolPrice(rpcSource: RpcSource, chain: Chain, tokenA: Address, tokenB: Address, fee: FeeAmount): Fraction {
         val poolAddress = getPoolAddress(rpcSource, chain, tokenA, tokenB, fee)
-        val callResponse = ethCall(rpcSource, poolAddress, Slot0Method().encodedABI())
+        val callResponse = ethCall(rpcSource, chain, poolAddress, Slot0Method().encodedABI())
         val sqrtPriceX96 = callResponse.sliceArray(IntRange(0, 31)).toBigInteger()
 
         val price = Fraction(sqrtPriceX96.pow(2), BigInteger.valueOf(2).pow(192))
@@ -52,12 +52,12 @@ class PoolManager(
     }
 
     private suspend fun getPoolAddress(rpcSource: RpcSource, chain: Chain, tokenA: Address, tokenB: Address, fee: FeeAmount): Address {
-        val callResponse = ethCall(rpcSource, Address(factoryAddress(chain)), GetPoolMethod(tokenA, tokenB, fee.value).encodedABI())
+        val callResponse = ethCall(rpcSource, chain, Address(factoryAddress(chain)), GetPoolMethod(tokenA, tokenB, fee.value).encodedABI())
         return Address(callResponse.sliceArray(IntRange(0, 31)))
     }
 
-    private suspend fun ethCall(rpcSource: RpcSource, contractAddress: Address, data: ByteArray): ByteArray {
-        return EthereumKit.call(rpcSource, contractAddress, data).await()
+    private suspend fun ethCall(rpcSource: RpcSource, chain: Chain, contractAddress: Address, data: ByteArray): ByteArray {
+        return EthereumKit.call(rpcSource, contractAddress, data, chain = chain, aggregate = true).await()
     }
 }
 
@@ -271,6 +271,6 @@ class QuoterV2(
 
     private suspend fun ethCall(rpcSource: RpcSource, chain: Chain, data: ByteArray): ByteArray {
         val quoterAddress = Address(quoterAddress(chain))
-        return EthereumKit.call(rpcSource, quoterAddress, data).await()
+        return EthereumKit.call(rpcSource, quoterAddress, data, chain = chain, aggregate = false).await()
     }
 }